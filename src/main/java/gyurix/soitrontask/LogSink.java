@@ -0,0 +1,28 @@
+package gyurix.soitrontask;
+
+/**
+ * The LogSink interface receives the log messages of a component.
+ * The console sink prints them prefixed with the name of the current thread, like the QueueHolder does by default.
+ */
+@FunctionalInterface
+public interface LogSink {
+    /**
+     * The sink printing the messages to the console, and the error messages to the error console.
+     */
+    LogSink CONSOLE = (msg, error) ->
+            (error ? System.err : System.out).println("[" + Thread.currentThread().getName() + "] " + msg);
+
+    /**
+     * The sink dropping every message, used where the log output would only distort the measurements.
+     */
+    LogSink QUIET = (msg, error) -> {
+    };
+
+    /**
+     * Receives a log message.
+     *
+     * @param msg   The message.
+     * @param error True if the message is an error message.
+     */
+    void log(Object msg, boolean error);
+}
@@ -1,6 +1,7 @@
 package gyurix.soitrontask;
 
 import lombok.Getter;
+import lombok.Setter;
 
 import java.util.LinkedList;
 import java.util.Queue;
@@ -18,6 +19,13 @@ public abstract class QueueHolder implements Runnable {
     @Getter
     private final Queue<String> log = new LinkedList<>();
 
+    /**
+     * The sink of the log messages, which prints them to the console and adds them to the log queues by default.
+     * Setting a different sink bypasses the log queues.
+     */
+    @Setter
+    private volatile LogSink logSink = this::record;
+
     /**
      * Constructs a QueueHolder object with the specified queue.
      *
@@ -28,22 +36,31 @@ public abstract class QueueHolder implements Runnable {
     }
 
     /**
-     * Logs a message to the console and adds it to the log queue.
+     * Logs a message through the log sink, by default to the console and the log queue.
      *
      * @param msg The message to be logged.
      */
     public void log(Object msg) {
-        System.out.println("[" + Thread.currentThread().getName() + "] " + msg);
-        log.add(msg.toString());
+        logSink.log(msg, false);
     }
 
     /**
-     * Logs an error message to the error console and adds it to the error log queue.
+     * Logs an error message through the log sink, by default to the error console and the error log queue.
      *
      * @param msg The error message to be logged.
      */
     public void logError(Object msg) {
-        System.err.println("[" + Thread.currentThread().getName() + "] " + msg);
-        errorLog.add(msg.toString());
+        logSink.log(msg, true);
+    }
+
+    /**
+     * Prints a message to the console and adds it to the matching log queue, the default sink of the log messages.
+     *
+     * @param msg   The message.
+     * @param error True if the message is an error message.
+     */
+    private void record(Object msg, boolean error) {
+        LogSink.CONSOLE.log(msg, error);
+        (error ? errorLog : log).add(msg.toString());
     }
 }
@@ -1,13 +1,29 @@
 package gyurix.soitrontask;
 
+import gyurix.soitrontask.command.CommandCoalescer;
 import gyurix.soitrontask.consumer.CommandExecutor;
+import gyurix.soitrontask.consumer.ConsumerPool;
 import gyurix.soitrontask.db.Database;
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.mapper.UserMapper;
+import gyurix.soitrontask.db.repository.MVStoreUserRepository;
+import gyurix.soitrontask.db.repository.OffHeapUserRepository;
+import gyurix.soitrontask.db.repository.Repository;
+import gyurix.soitrontask.db.repository.ShardedUserRepository;
 import gyurix.soitrontask.db.repository.UserRepository;
+import gyurix.soitrontask.pipeline.CommandPipeline;
 import gyurix.soitrontask.producer.Producer;
+import gyurix.soitrontask.queue.CommandSink;
+import gyurix.soitrontask.queue.FairCommandQueue;
+import gyurix.soitrontask.queue.PriorityCommandQueue;
+import gyurix.soitrontask.session.SessionManager;
 
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Queue;
 import java.util.Scanner;
+import java.util.function.Supplier;
 
 /**
  * The main class of the Soitron Task application.
@@ -17,23 +33,249 @@ public class SoitronTaskMain {
     /**
      * The entry point of the Soitron Task application.
      * It initializes the command queue, the database, and the user repository.
-     * Then, it creates instances of the producer and consumer.
-     * Finally, it starts the producer and consumer threads.
+     * Then, it creates instances of the producer and the consumer pool, or the staged pipeline if it is enabled.
+     * The error counters of the consumers are printed when the application exits.
+     * Finally, it starts the producer and the consumer pool or pipeline threads.
+     * <p>
+     * Supported options:
+     * <ul>
+     *     <li>--storage=h2|offheap|mvstore|sharded: The storage backend of the users, h2 by default</li>
+     *     <li>--shards=...: The comma separated host:port addresses of the ShardServers used by the sharded storage</li>
+     *     <li>--shard-max-connections=...: The maximum number of the connections per shard, 16 by default</li>
+     *     <li>--shard-connect-timeout-millis=...: The timeout of connecting to a shard, 5 s by default</li>
+     *     <li>--shard-read-timeout-millis=...: The timeout of the responses of the shards, 30 s by default</li>
+     *     <li>--url=...: The JDBC URL of the database used by the h2 storage</li>
+     *     <li>--scan-partitions=...: The number of the id ranges listed concurrently by the h2 storage, 1 by default</li>
+     *     <li>--mvstore-file=...: The file of the mvstore storage, in-memory if not specified</li>
+     *     <li>--mvstore-autocommit-delay=...: The auto commit delay of the mvstore storage in milliseconds</li>
+     *     <li>--mvstore-autocommit-buffer=...: The auto commit buffer size of the mvstore storage in kilobytes</li>
+     *     <li>--mvstore-compact-fill-rate=...: The fill rate percentage triggering background compaction</li>
+     *     <li>--coalesce=...: The window size of the command coalescer, the coalescer is disabled if not specified</li>
+     *     <li>--scheduler=fifo|priority|fair: The scheduling of the command queue, fifo by default</li>
+     *     <li>--max-queue-wait-millis=...: The starvation protection limit of the priority scheduler</li>
+     *     <li>--producer-rate=...: The commands per second allowed for the producer by the fair scheduler</li>
+     *     <li>--producer-burst=...: The commands allowed at once above the producer rate, 1 by default</li>
+     *     <li>--producer-max-in-flight=...: The maximum number of queued commands of the producer</li>
+     *     <li>--producer-overflow=reject|delay: The handling of commands exceeding the producer limits</li>
+     *     <li>--min-consumers=...: The minimum number of consumers, 1 by default</li>
+     *     <li>--max-consumers=...: The maximum number of consumers, equal to the minimum by default</li>
+     *     <li>--target-drain-millis=...: The time under which the consumer pool should drain the queue</li>
+     *     <li>--idle-timeout-millis=...: The time after which idle consumers above the minimum are retired</li>
+     *     <li>--pipeline=...,...,...: Enables the staged pipeline instead of the consumer pool, with the given number
+     *     of parse, execute and render threads</li>
+     *     <li>--pipeline-queue-capacity=...: The capacity of the queue in front of each pipeline stage</li>
+     *     <li>--isolation=read_uncommitted|read_committed|repeatable_read|serializable: The isolation level
+     *     of the transactions, read_committed by default</li>
+     *     <li>--transaction-timeout-millis=...: The inactivity time after which open transactions are aborted</li>
+     * </ul>
      *
-     * @param args The command-line arguments (not used).
+     * @param args The command-line arguments in --name=value format.
      */
     public static void main(String[] args) {
-        Queue<String> commandQueue = new LinkedList<>();
-        Database database = new Database("jdbc:h2:mem:mydatabase");
-        UserRepository userRepository = new UserRepository(database);
+        Map<String, String> options = parseOptions(args);
+        Queue<String> commandQueue = createCommandQueue(options);
+        Repository<User, UserMapper> userRepository = createUserRepository(options);
 
-        Producer producer = new Producer(commandQueue, new Scanner(System.in));
-        CommandExecutor commandExecutor = new CommandExecutor(commandQueue, userRepository);
+        CommandCoalescer coalescer = createCoalescer(options);
+        SessionManager sessions = createSessionManager(options);
+
+        Producer producer = new Producer(commandQueue, createProducerSink(commandQueue, "stdin", options),
+                new Scanner(System.in), sessions == null ? null : sessions.open());
+        Supplier<CommandExecutor> executorFactory =
+                () -> new CommandExecutor(commandQueue, userRepository, coalescer, sessions);
 
         Thread producerThread = new Thread(producer);
-        Thread consumerThread = new Thread(commandExecutor);
+        Thread consumerThread;
+        if (options.containsKey("pipeline")) {
+            CommandPipeline pipeline = new CommandPipeline(commandQueue, executorFactory,
+                    createPipelineSettings(options));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                System.out.println(pipeline.getErrorStats());
+                System.out.println(pipeline.getStats());
+            }));
+            consumerThread = new Thread(pipeline, "pipeline");
+        } else {
+            ConsumerPool consumerPool = new ConsumerPool(commandQueue, executorFactory,
+                    createConsumerPoolSettings(options));
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(consumerPool.getErrorStats())));
+            consumerThread = new Thread(consumerPool);
+        }
 
         producerThread.start();
         consumerThread.start();
     }
+
+    /**
+     * Creates the command coalescer if it is enabled by the coalesce option.
+     * The statistics of the coalescer are printed when the application exits.
+     *
+     * @param options The parsed command-line options.
+     * @return The created command coalescer, or null if it is disabled.
+     */
+    private static CommandCoalescer createCoalescer(Map<String, String> options) {
+        if (!options.containsKey("coalesce")) {
+            return null;
+        }
+        CommandCoalescer coalescer = new CommandCoalescer(Integer.parseInt(options.get("coalesce")));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(coalescer.getStats())));
+        return coalescer;
+    }
+
+    /**
+     * Creates the command queue selected by the scheduler option.
+     * The statistics of the priority scheduler are printed when the application exits.
+     *
+     * @param options The parsed command-line options.
+     * @return The created command queue.
+     * @throws IllegalArgumentException if the selected scheduler is not supported.
+     */
+    private static Queue<String> createCommandQueue(Map<String, String> options) {
+        String scheduler = options.getOrDefault("scheduler", "fifo");
+        switch (scheduler.toLowerCase()) {
+            case "fifo" -> {
+                return new LinkedList<>();
+            }
+            case "priority" -> {
+                PriorityCommandQueue queue = new PriorityCommandQueue(
+                        Long.parseLong(options.getOrDefault("max-queue-wait-millis", "1000")));
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    synchronized (queue) {
+                        System.out.println(queue.getStats());
+                    }
+                }));
+                return queue;
+            }
+            case "fair" -> {
+                FairCommandQueue queue = new FairCommandQueue();
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> System.out.println(queue.getStats())));
+                return queue;
+            }
+            default -> throw new IllegalArgumentException("Unsupported scheduler " + scheduler);
+        }
+    }
+
+    /**
+     * Creates the sink used by a producer for adding its commands. With the fair scheduler, it is the sub-queue
+     * of the producer enforcing the producer limits options, otherwise it adds the commands to the command queue.
+     *
+     * @param commandQueue The command queue.
+     * @param name         The name of the producer.
+     * @param options      The parsed command-line options.
+     * @return The sink of the producer.
+     */
+    private static CommandSink createProducerSink(Queue<String> commandQueue, String name,
+                                                  Map<String, String> options) {
+        if (!(commandQueue instanceof FairCommandQueue fairQueue)) {
+            return CommandSink.of(commandQueue);
+        }
+        return fairQueue.forProducer(name, new FairCommandQueue.Limits(
+                Double.parseDouble(options.getOrDefault("producer-rate", "0")),
+                Integer.parseInt(options.getOrDefault("producer-burst", "1")),
+                Integer.parseInt(options.getOrDefault("producer-max-in-flight", "0")),
+                FairCommandQueue.OverflowAction.valueOf(
+                        options.getOrDefault("producer-overflow", "delay").toUpperCase())));
+    }
+
+    /**
+     * Creates the settings of the consumer pool from the command-line options.
+     *
+     * @param options The parsed command-line options.
+     * @return The settings of the consumer pool.
+     */
+    private static ConsumerPool.Settings createConsumerPoolSettings(Map<String, String> options) {
+        int minConsumers = Integer.parseInt(options.getOrDefault("min-consumers", "1"));
+        return new ConsumerPool.Settings(minConsumers,
+                Integer.parseInt(options.getOrDefault("max-consumers", String.valueOf(minConsumers))),
+                Long.parseLong(options.getOrDefault("target-drain-millis", "100")),
+                Long.parseLong(options.getOrDefault("idle-timeout-millis", "60000")),
+                50, 3);
+    }
+
+    /**
+     * Creates the settings of the staged pipeline from the command-line options.
+     *
+     * @param options The parsed command-line options.
+     * @return The settings of the pipeline.
+     * @throws IllegalArgumentException if the pipeline option doesn't contain three thread counts.
+     */
+    private static CommandPipeline.Settings createPipelineSettings(Map<String, String> options) {
+        String[] threads = options.get("pipeline").split(",");
+        if (threads.length != 3) {
+            throw new IllegalArgumentException("The pipeline option must contain the parse, execute and render " +
+                    "thread counts, e.g. --pipeline=1,4,1");
+        }
+        return new CommandPipeline.Settings(Integer.parseInt(threads[0].trim()), Integer.parseInt(threads[1].trim()),
+                Integer.parseInt(threads[2].trim()),
+                Integer.parseInt(options.getOrDefault("pipeline-queue-capacity", "1024")));
+    }
+
+    /**
+     * Creates the session manager supporting the transactions if the h2 storage is used.
+     * The statistics of the transactions are printed and the session connections are closed when the application
+     * exits.
+     *
+     * @param options The parsed command-line options.
+     * @return The created session manager, or null if the selected storage doesn't support transactions.
+     */
+    private static SessionManager createSessionManager(Map<String, String> options) {
+        if (!options.getOrDefault("storage", "h2").equalsIgnoreCase("h2")) {
+            return null;
+        }
+        SessionManager sessions = new SessionManager(options.getOrDefault("url", "jdbc:h2:mem:mydatabase"),
+                SessionManager.parseIsolationLevel(options.getOrDefault("isolation", "read_committed")),
+                Long.parseLong(options.getOrDefault("transaction-timeout-millis", "30000")));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println(sessions.getStats());
+            sessions.close();
+        }));
+        return sessions;
+    }
+
+    /**
+     * Creates the user repository selected by the storage option.
+     * The mvstore storage is committed and closed when the application exits.
+     *
+     * @param options The parsed command-line options.
+     * @return The created user repository.
+     * @throws IllegalArgumentException if the selected storage is not supported.
+     */
+    public static Repository<User, UserMapper> createUserRepository(Map<String, String> options) {
+        String storage = options.getOrDefault("storage", "h2");
+        return switch (storage.toLowerCase()) {
+            case "h2" -> new UserRepository(new Database(options.getOrDefault("url", "jdbc:h2:mem:mydatabase")),
+                    Integer.parseInt(options.getOrDefault("scan-partitions", "1")));
+            case "offheap" -> new OffHeapUserRepository();
+            case "sharded" -> new ShardedUserRepository(ShardedUserRepository.parseAddresses(options.get("shards")),
+                    new ShardedUserRepository.Settings(
+                            Integer.parseInt(options.getOrDefault("shard-max-connections", "16")),
+                            Integer.parseInt(options.getOrDefault("shard-connect-timeout-millis", "5000")),
+                            Integer.parseInt(options.getOrDefault("shard-read-timeout-millis", "30000"))));
+            case "mvstore" -> {
+                MVStoreUserRepository repository = new MVStoreUserRepository(MVStoreUserRepository.openStore(
+                        options.get("mvstore-file"),
+                        Integer.parseInt(options.getOrDefault("mvstore-autocommit-delay", "1000")),
+                        Integer.parseInt(options.getOrDefault("mvstore-autocommit-buffer", "1024")),
+                        Integer.parseInt(options.getOrDefault("mvstore-compact-fill-rate", "90"))));
+                Runtime.getRuntime().addShutdownHook(new Thread(repository::close));
+                yield repository;
+            }
+            default -> throw new IllegalArgumentException("Unsupported storage " + storage);
+        };
+    }
+
+    /**
+     * Parses the command-line arguments in --name=value format.
+     * Arguments without a value are stored with the value "true".
+     *
+     * @param args The command-line arguments.
+     * @return The map of option names and values.
+     */
+    public static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] option = arg.replaceFirst("^--", "").split("=", 2);
+            options.put(option[0], option.length == 2 ? option[1] : "true");
+        }
+        return options;
+    }
 }
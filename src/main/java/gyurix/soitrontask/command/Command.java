@@ -0,0 +1,80 @@
+package gyurix.soitrontask.command;
+
+import lombok.Getter;
+
+/**
+ * The Command class represents a parsed command line in the "Name (arguments)" format.
+ * <p>
+ * The line may start with a priority class prefix, e.g. {@code [interactive] PrintAll}, which is only used for
+ * the scheduling of the command. The prefix is not removed from the line, so the queues don't need to rewrite it,
+ * and the consumers report the completion of the same line instance which was submitted.
+ */
+@Getter
+public class Command {
+    /**
+     * The arguments of the command without the surrounding parentheses, or null if the command has no arguments.
+     */
+    private final String args;
+
+    /**
+     * The original command line.
+     */
+    private final String line;
+
+    /**
+     * The name of the command as it was entered.
+     */
+    private final String name;
+
+    /**
+     * The priority class requested by the prefix of the line, or null if the line has no valid prefix.
+     */
+    private final PriorityClass priorityClass;
+
+    /**
+     * The type of the command.
+     */
+    private final CommandType type;
+
+    /**
+     * Constructs a new Command by parsing the given command line.
+     *
+     * @param line The command line to be parsed.
+     */
+    public Command(String line) {
+        this.line = line;
+        priorityClass = parsePrefix(line);
+        String body = priorityClass == null ? line : line.substring(line.indexOf(']') + 1);
+        String[] command = body.trim().split(" *\\(", 2);
+        if (command.length == 2 && command[1].endsWith(")")) {
+            command[1] = command[1].substring(0, command[1].length() - 1);
+        }
+        name = command[0];
+        args = command.length == 2 ? command[1] : null;
+        type = CommandType.of(name);
+    }
+
+    /**
+     * Parses the priority class prefix of a command line.
+     *
+     * @param line The command line.
+     * @return The priority class in the prefix, or null if the line has no valid prefix.
+     */
+    private static PriorityClass parsePrefix(String line) {
+        if (!line.startsWith("[")) {
+            return null;
+        }
+        int end = line.indexOf(']');
+        return end == -1 ? null : PriorityClass.of(line.substring(1, end).trim());
+    }
+
+    /**
+     * Returns the command in "name args" format, as it is shown in the error messages.
+     *
+     * @return The string representation of the command.
+     */
+    @Override
+    public String toString() {
+        return args == null ? name : name + " " + args;
+    }
+}
@@ -0,0 +1,208 @@
+package gyurix.soitrontask.command;
+
+import gyurix.soitrontask.db.entity.User;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The CommandCoalescer class is an optional optimizer stage of the CommandExecutor, which looks at a window
+ * of queued commands and eliminates the work which is provably redundant within the window:
+ * <ul>
+ *     <li>Adds performed on an empty repository and wiped by a later DeleteAll before being read are skipped</li>
+ *     <li>DeleteAlls performed on a repository known to be empty are skipped</li>
+ *     <li>PrintAlls performed on a repository known to be empty are answered without querying it</li>
+ *     <li>PrintAlls without writes since the previous PrintAll repeat its result</li>
+ * </ul>
+ * Other writes, including the commands of the transactions executed through session markers, invalidate
+ * everything known about the repository. The skipped commands still produce the same log output as if they were
+ * executed.
+ * The plan is only valid if the whole window is executed atomically, which is ensured by the CommandExecutor
+ * locking the repository for the duration of the window.
+ * <p>
+ * A single coalescer can be shared by multiple executors, it only keeps thread safe statistics.
+ */
+public class CommandCoalescer {
+    /**
+     * The number of the commands processed in each action.
+     */
+    private final AtomicLongArray actionCounts = new AtomicLongArray(Action.values().length);
+
+    /**
+     * The maximum number of commands examined together.
+     */
+    @Getter
+    private final int windowSize;
+
+    /**
+     * Constructs a new CommandCoalescer with the specified window size.
+     *
+     * @param windowSize The maximum number of commands examined together.
+     */
+    public CommandCoalescer(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Parses the user of an Add command, if its arguments are valid.
+     *
+     * @param command The Add command.
+     * @return The parsed user, or null if the arguments are invalid.
+     */
+    private static User parseUser(Command command) {
+        return CommandValidator.validate(command) == null ? new User(command.getArgs()) : null;
+    }
+
+    /**
+     * Plans the execution of a window of commands.
+     *
+     * @param window The commands in their queue order.
+     * @return The steps to be performed in the same order as the commands.
+     */
+    public List<Step> coalesce(List<Command> window) {
+        List<Step> steps = new ArrayList<>(window.size());
+        List<Integer> pendingAdds = new ArrayList<>();
+        Set<Integer> pendingIds = new HashSet<>();
+        boolean empty = false;
+        boolean readValid = false;
+        for (Command command : window) {
+            switch (command.getType()) {
+                case ADD -> {
+                    User user = empty ? parseUser(command) : null;
+                    readValid = false;
+                    if (user != null && pendingIds.add(user.getId())) {
+                        pendingAdds.add(steps.size());
+                        steps.add(new Step(command, Action.EXECUTE));
+                        continue;
+                    }
+                    pendingAdds.clear();
+                    pendingIds.clear();
+                    empty = false;
+                    steps.add(new Step(command, Action.EXECUTE));
+                }
+                case ADD_IF_ABSENT, SESSION, UPSERT -> {
+                    pendingAdds.clear();
+                    pendingIds.clear();
+                    empty = false;
+                    readValid = false;
+                    steps.add(new Step(command, Action.EXECUTE));
+                }
+                case DELETE_ALL -> {
+                    for (int index : pendingAdds) {
+                        steps.set(index, new Step(steps.get(index).command(), Action.SKIP_ADD));
+                    }
+                    steps.add(new Step(command, empty ? Action.SKIP_DELETE_ALL : Action.EXECUTE));
+                    pendingAdds.clear();
+                    pendingIds.clear();
+                    empty = true;
+                    readValid = false;
+                }
+                case PRINT_ALL -> {
+                    if (empty && pendingAdds.isEmpty()) {
+                        steps.add(new Step(command, Action.EMPTY_PRINT_ALL));
+                        continue;
+                    }
+                    if (!pendingAdds.isEmpty()) {
+                        pendingAdds.clear();
+                        pendingIds.clear();
+                        empty = false;
+                    }
+                    steps.add(new Step(command, readValid ? Action.REPEAT_PRINT_ALL : Action.EXECUTE));
+                    readValid = true;
+                }
+                default -> steps.add(new Step(command, Action.EXECUTE));
+            }
+        }
+        for (Step step : steps) {
+            actionCounts.incrementAndGet(step.action().ordinal());
+        }
+        return steps;
+    }
+
+    /**
+     * Gets the number of the commands which were processed in the given action.
+     *
+     * @param action The action.
+     * @return The number of the commands processed in the given action.
+     */
+    public long getCount(Action action) {
+        return actionCounts.get(action.ordinal());
+    }
+
+    /**
+     * Gets the number of the commands, which were not executed, because they were provably redundant.
+     *
+     * @return The number of the eliminated commands.
+     */
+    public long getEliminatedCount() {
+        return getProcessedCount() - getCount(Action.EXECUTE);
+    }
+
+    /**
+     * Gets the number of the commands processed by the coalescer.
+     *
+     * @return The number of the processed commands.
+     */
+    public long getProcessedCount() {
+        long processed = 0;
+        for (int i = 0; i < actionCounts.length(); ++i) {
+            processed += actionCounts.get(i);
+        }
+        return processed;
+    }
+
+    /**
+     * Gets a human-readable summary of the work eliminated by the coalescer.
+     *
+     * @return The summary of the coalescer statistics.
+     */
+    public String getStats() {
+        StringBuilder sb = new StringBuilder("Coalescer eliminated ")
+                .append(getEliminatedCount()).append(" of ").append(getProcessedCount()).append(" commands");
+        for (Action action : Action.values()) {
+            if (action != Action.EXECUTE) {
+                sb.append(", ").append(action).append(": ").append(getCount(action));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * The Action enum lists the ways a command can be processed by the executor.
+     */
+    public enum Action {
+        /**
+         * The command must be executed.
+         */
+        EXECUTE,
+        /**
+         * The Add command is wiped by a later DeleteAll, so it only needs to be logged.
+         */
+        SKIP_ADD,
+        /**
+         * The DeleteAll command is performed on an empty repository, so it only needs to be logged.
+         */
+        SKIP_DELETE_ALL,
+        /**
+         * The PrintAll command is performed on an empty repository, so it can be answered without querying it.
+         */
+        EMPTY_PRINT_ALL,
+        /**
+         * The PrintAll command has the same result as the previous PrintAll in the window.
+         */
+        REPEAT_PRINT_ALL
+    }
+
+    /**
+     * The Step record represents a command of the window and the way it should be processed.
+     *
+     * @param command The command.
+     * @param action  The way the command should be processed.
+     */
+    public record Step(Command command, Action action) {
+    }
+}
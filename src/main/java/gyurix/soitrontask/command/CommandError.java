@@ -0,0 +1,63 @@
+package gyurix.soitrontask.command;
+
+/**
+ * The CommandError record is a compact description of a rejected or failed command,
+ * used instead of exceptions and stack traces for the expected errors, like malformed input or duplicate ids.
+ *
+ * @param code     The code of the error.
+ * @param position The character offset in the command line where the error was detected.
+ */
+public record CommandError(Code code, int position) {
+    /**
+     * Formats the error of the given command as a single log line.
+     *
+     * @param command The command having the error.
+     * @return The log line describing the error.
+     */
+    public String format(Command command) {
+        return "Command \"" + command.getLine() + "\" failed with " + code + " at position " + position +
+                ", enter \"Help\" to list the available commands";
+    }
+
+    /**
+     * The Code enum lists the kinds of the command errors.
+     */
+    public enum Code {
+        /**
+         * The command is not supported.
+         */
+        UNKNOWN_COMMAND,
+        /**
+         * The command has less arguments than required.
+         */
+        MISSING_ARGUMENTS,
+        /**
+         * The id argument is not a valid integer.
+         */
+        INVALID_ID,
+        /**
+         * A text argument is longer than the column storing it.
+         */
+        VALUE_TOO_LONG,
+        /**
+         * A user with the same id already exists.
+         */
+        DUPLICATE_ID,
+        /**
+         * A transactional command was used outside a transaction, or without a producer session supporting it.
+         */
+        NOT_IN_TRANSACTION,
+        /**
+         * A transaction was begun while another transaction of the session was still open.
+         */
+        ALREADY_IN_TRANSACTION,
+        /**
+         * The transaction was aborted by its timeout, its commands are rejected until it is ended.
+         */
+        TRANSACTION_ABORTED,
+        /**
+         * The execution of the command failed unexpectedly.
+         */
+        EXECUTION_FAILED
+    }
+}
@@ -0,0 +1,84 @@
+package gyurix.soitrontask.command;
+
+import gyurix.soitrontask.db.entity.User;
+
+import java.util.List;
+
+/**
+ * The CommandResult interface is the typed outcome of an executed command, so the callers of the CommandService
+ * and the completion listeners can use the results of the commands without parsing the logs.
+ */
+public sealed interface CommandResult {
+    /**
+     * Checks if the command was executed successfully.
+     *
+     * @return True if the command was executed successfully, false if it failed.
+     */
+    default boolean isSuccess() {
+        return !(this instanceof Failed);
+    }
+
+    /**
+     * The result of an Add or an AddIfAbsent command adding a new user.
+     *
+     * @param user The added user.
+     */
+    record Added(User user) implements CommandResult {
+    }
+
+    /**
+     * The result of an AddIfAbsent command not adding the user, because a user with the same id already exists.
+     *
+     * @param id The id of the existing user.
+     */
+    record AlreadyExists(int id) implements CommandResult {
+    }
+
+    /**
+     * The result of a DeleteAll command.
+     *
+     * @param count The number of the deleted users. With a coalescer, the users of the skipped Adds are not counted.
+     */
+    record Deleted(int count) implements CommandResult {
+    }
+
+    /**
+     * The result of a failed command.
+     *
+     * @param error The error of the command.
+     */
+    record Failed(CommandError error) implements CommandResult {
+    }
+
+    /**
+     * The result of a Help command.
+     *
+     * @param lines The lines describing the available commands.
+     */
+    record Help(List<String> lines) implements CommandResult {
+    }
+
+    /**
+     * The result of a Begin, Commit or Rollback command.
+     *
+     * @param type The type of the transactional command.
+     */
+    record Transaction(CommandType type) implements CommandResult {
+    }
+
+    /**
+     * The result of an Upsert command.
+     *
+     * @param user The added or replaced user.
+     */
+    record Upserted(User user) implements CommandResult {
+    }
+
+    /**
+     * The result of a PrintAll command.
+     *
+     * @param users The printed users.
+     */
+    record Users(List<User> users) implements CommandResult {
+    }
+}
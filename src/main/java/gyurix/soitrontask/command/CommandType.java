@@ -0,0 +1,40 @@
+package gyurix.soitrontask.command;
+
+/**
+ * The CommandType enum lists the types of the commands supported by the CommandExecutor.
+ */
+public enum CommandType {
+    ADD,
+    ADD_IF_ABSENT,
+    BEGIN,
+    COMMIT,
+    DELETE_ALL,
+    HELP,
+    PRINT_ALL,
+    ROLLBACK,
+    SESSION,
+    UNKNOWN,
+    UPSERT;
+
+    /**
+     * Gets the type of a command by its case-insensitive name.
+     *
+     * @param name The name of the command.
+     * @return The type of the command, or UNKNOWN if the command is not supported.
+     */
+    public static CommandType of(String name) {
+        return switch (name.toLowerCase()) {
+            case "add" -> ADD;
+            case "addifabsent" -> ADD_IF_ABSENT;
+            case "begin" -> BEGIN;
+            case "commit" -> COMMIT;
+            case "deleteall" -> DELETE_ALL;
+            case "help" -> HELP;
+            case "printall" -> PRINT_ALL;
+            case "rollback" -> ROLLBACK;
+            case "session" -> SESSION;
+            case "upsert" -> UPSERT;
+            default -> UNKNOWN;
+        };
+    }
+}
@@ -0,0 +1,105 @@
+package gyurix.soitrontask.command;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The CommandValidator class checks the commands before their execution without throwing exceptions,
+ * so malformed input is rejected at the cost of a string scan instead of an exception and its stack trace.
+ * <p>
+ * A user argument list accepted by the validator can be parsed by the User constructor without any exception.
+ */
+public final class CommandValidator {
+    /**
+     * The maximum length of the guid and the name, matching the columns of the SUSERS table.
+     * The length is counted in UTF-16 chars like by H2, so a supplementary character takes two of them.
+     */
+    public static final int MAX_VALUE_LENGTH = 50;
+
+    /**
+     * The separator of the arguments, matching the one used by the User constructor.
+     */
+    private static final Pattern SEPARATOR = Pattern.compile(", *");
+
+    private CommandValidator() {
+    }
+
+    /**
+     * Checks if the given text is a valid int in the format accepted by Integer.parseInt.
+     *
+     * @param text The text to be checked.
+     * @return True if the text is a valid int, false otherwise.
+     */
+    private static boolean isInt(String text) {
+        int start = text.startsWith("-") || text.startsWith("+") ? 1 : 0;
+        if (text.length() == start || text.length() - start > 10) {
+            return false;
+        }
+        for (int i = start; i < text.length(); ++i) {
+            if (!Character.isDigit(text.charAt(i))) {
+                return false;
+            }
+        }
+        long value = Long.parseLong(text);
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE;
+    }
+
+    /**
+     * Validates a command.
+     *
+     * @param command The command to be validated.
+     * @return The error of the command, or null if the command is valid.
+     */
+    public static CommandError validate(Command command) {
+        return switch (command.getType()) {
+            case ADD, ADD_IF_ABSENT, UPSERT -> validateUser(command);
+            case UNKNOWN -> new CommandError(CommandError.Code.UNKNOWN_COMMAND, 0);
+            default -> null;
+        };
+    }
+
+    /**
+     * Validates the user arguments of a command in the "id, guid, name" format.
+     *
+     * @param command The command having user arguments.
+     * @return The error of the arguments, or null if the arguments are valid.
+     */
+    private static CommandError validateUser(Command command) {
+        String args = command.getArgs();
+        String line = command.getLine();
+        if (args == null) {
+            return new CommandError(CommandError.Code.MISSING_ARGUMENTS, line.length());
+        }
+        int argsOffset = line.indexOf('(') + 1;
+        List<Integer> starts = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        Matcher matcher = SEPARATOR.matcher(args);
+        int start = 0;
+        while (matcher.find()) {
+            starts.add(start);
+            fields.add(args.substring(start, matcher.start()));
+            start = matcher.end();
+        }
+        starts.add(start);
+        fields.add(args.substring(start));
+        while (!fields.isEmpty() && fields.get(fields.size() - 1).isEmpty()) {
+            starts.remove(starts.size() - 1);
+            fields.remove(fields.size() - 1);
+        }
+        if (fields.size() < 3) {
+            return new CommandError(CommandError.Code.MISSING_ARGUMENTS, argsOffset + args.length());
+        }
+        if (!isInt(fields.get(0))) {
+            return new CommandError(CommandError.Code.INVALID_ID, argsOffset + starts.get(0));
+        }
+        for (int i = 1; i <= 2; ++i) {
+            String value = fields.get(i).replace("\"", "");
+            if (value.length() > MAX_VALUE_LENGTH) {
+                return new CommandError(CommandError.Code.VALUE_TOO_LONG, argsOffset + starts.get(i));
+            }
+        }
+        return null;
+    }
+}
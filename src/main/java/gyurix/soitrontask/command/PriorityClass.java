@@ -0,0 +1,75 @@
+package gyurix.soitrontask.command;
+
+import lombok.Getter;
+
+/**
+ * The PriorityClass enum lists the scheduling classes of the commands used by the PriorityCommandQueue.
+ * <p>
+ * The writes (Add, AddIfAbsent, Upsert, DeleteAll and the transactional commands) always share the same class,
+ * even with an explicit class prefix, so they are never reordered relative to each other.
+ */
+@Getter
+public enum PriorityClass {
+    /**
+     * Cheap commands answered without touching the repository, like Help or unknown commands.
+     */
+    INTERACTIVE(8),
+    /**
+     * Commands modifying the repository, like Add and DeleteAll.
+     */
+    WRITE(4),
+    /**
+     * Expensive commands reading the whole repository, like PrintAll.
+     */
+    BULK(1);
+
+    /**
+     * The relative share of the consumers' time given to the class when every class has pending commands.
+     */
+    private final int weight;
+
+    PriorityClass(int weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Gets the priority class a command is scheduled in: the class of its prefix,
+     * or its default class if it has no prefix or it is a write.
+     *
+     * @param command The command.
+     * @return The priority class of the command.
+     */
+    public static PriorityClass of(Command command) {
+        PriorityClass defaultClass = of(command.getType());
+        return command.getPriorityClass() == null || defaultClass == WRITE ? defaultClass : command.getPriorityClass();
+    }
+
+    /**
+     * Gets the default priority class of a command type.
+     *
+     * @param type The type of the command.
+     * @return The default priority class of the command type.
+     */
+    public static PriorityClass of(CommandType type) {
+        return switch (type) {
+            case ADD, ADD_IF_ABSENT, BEGIN, COMMIT, DELETE_ALL, ROLLBACK, SESSION, UPSERT -> WRITE;
+            case PRINT_ALL -> BULK;
+            default -> INTERACTIVE;
+        };
+    }
+
+    /**
+     * Gets a priority class by its case-insensitive name.
+     *
+     * @param name The name of the priority class.
+     * @return The priority class, or null if there is no class with the given name.
+     */
+    public static PriorityClass of(String name) {
+        for (PriorityClass priorityClass : values()) {
+            if (priorityClass.name().equalsIgnoreCase(name)) {
+                return priorityClass;
+            }
+        }
+        return null;
+    }
+}
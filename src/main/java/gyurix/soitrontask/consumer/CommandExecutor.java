@@ -1,19 +1,113 @@
 package gyurix.soitrontask.consumer;
 
+import gyurix.soitrontask.command.Command;
+import gyurix.soitrontask.command.CommandCoalescer;
+import gyurix.soitrontask.command.CommandError;
+import gyurix.soitrontask.command.CommandResult;
+import gyurix.soitrontask.command.CommandType;
+import gyurix.soitrontask.command.CommandValidator;
 import gyurix.soitrontask.db.entity.User;
-import gyurix.soitrontask.db.repository.UserRepository;
+import gyurix.soitrontask.db.mapper.UserMapper;
+import gyurix.soitrontask.db.repository.Repository;
+import gyurix.soitrontask.queue.CompletionTracking;
+import gyurix.soitrontask.session.Session;
+import gyurix.soitrontask.session.SessionManager;
+import lombok.Getter;
+import lombok.Setter;
 
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Queue;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ToLongFunction;
 
 /**
  * The CommandExecutor class represents a consumer responsible for executing commands
- * received from a shared queue and interacting with a UserRepository.
+ * received from a shared queue and interacting with a user repository.
  * It processes commands related to adding users, deleting all users,
  * printing all users, and providing help information about available commands.
  * The CommandExecutor runs in a separate thread and continuously polls the command queue
  * for new commands to execute.
+ * <p>
+ * Optionally a CommandCoalescer can be used, in which case the executor polls a window of commands at once
+ * and skips the work which the coalescer found redundant, while producing the same log output.
+ * <p>
+ * The commands are validated before their execution, and duplicate ids are detected without exceptions,
+ * so the expected errors are only logged as compact error records and counted by their codes.
+ * <p>
+ * With a SessionManager, the executor also processes the {@code Session (id)} markers of the producer sessions,
+ * by executing the next command of the session, on its transactional connection during a transaction.
+ * <p>
+ * An optional CompletionListener can be notified about every processed command, which allows tracking the completion
+ * of the commands without polling the logs.
+ * <p>
+ * The executor can also be used as the execution stage of a CommandPipeline, in which case it doesn't run its own
+ * thread, and the output of the commands is collected by {@link #executeDeferred} instead of being printed.
  */
-public class CommandExecutor extends Consumer<UserRepository> implements Runnable {
+public class CommandExecutor extends Consumer<Repository<User, UserMapper>> implements Runnable {
+    /**
+     * The lines of the help menu.
+     */
+    private static final List<String> HELP_LINES = List.of(
+            "- Add (id, guid, name): Adds a new user",
+            "- AddIfAbsent (id, guid, name): Adds a new user, unless a user with the same id exists",
+            "- Begin: Begins a transaction of the producer",
+            "- Commit: Commits the transaction of the producer",
+            "- DeleteAll: Deletes all the users",
+            "- Help: Shows this help menu",
+            "- PrintAll: Prints all the users",
+            "- Rollback: Rolls back the transaction of the producer",
+            "- Upsert (id, guid, name): Adds a new user or replaces the user with the same id");
+
+    /**
+     * The maximum time in milliseconds to wait for new commands before checking the running flag again.
+     */
+    private static final long POLL_TIMEOUT_MILLIS = 10;
+
+    /**
+     * The optional coalescer eliminating the redundant commands, or null if every command should be executed.
+     */
+    private final CommandCoalescer coalescer;
+
+    /**
+     * The manager of the producer sessions, or null if transactions are not supported.
+     */
+    private final SessionManager sessions;
+
+    /**
+     * The number of the failed commands by their error codes.
+     */
+    private final AtomicLongArray errorCounts = new AtomicLongArray(CommandError.Code.values().length);
+
+    /**
+     * The listener notified after processing each command, or null if no listener is set.
+     */
+    @Setter
+    private volatile CompletionListener completionListener;
+
+    /**
+     * The exponential moving average of the command processing time in nanoseconds.
+     */
+    @Getter
+    private volatile long averageLatencyNanos;
+
+    /**
+     * The System.nanoTime() value of the moment when the executor finished its last command, or started.
+     */
+    @Getter
+    private volatile long lastActiveNanos = System.nanoTime();
+
+    /**
+     * The output collected by the current deferred execution, or null if the output is printed directly.
+     */
+    private List<Output> deferredOutput;
+
+    /**
+     * The users printed by the last executed PrintAll command of the current window.
+     */
+    private List<User> lastPrintedUsers = List.of();
 
     /**
      * Constructs a new CommandExecutor with the specified command queue and user repository.
@@ -21,8 +115,35 @@ public class CommandExecutor extends Consumer<UserRepository> implements Runnabl
      * @param queue      The queue that stores the commands to be executed.
      * @param repository The user repository to interact with.
      */
-    public CommandExecutor(Queue<String> queue, UserRepository repository) {
+    public CommandExecutor(Queue<String> queue, Repository<User, UserMapper> repository) {
+        this(queue, repository, null, null);
+    }
+
+    /**
+     * Constructs a new CommandExecutor with the specified command queue, user repository and command coalescer.
+     *
+     * @param queue      The queue that stores the commands to be executed.
+     * @param repository The user repository to interact with.
+     * @param coalescer  The coalescer eliminating the redundant commands, or null for executing every command.
+     */
+    public CommandExecutor(Queue<String> queue, Repository<User, UserMapper> repository, CommandCoalescer coalescer) {
+        this(queue, repository, coalescer, null);
+    }
+
+    /**
+     * Constructs a new CommandExecutor with the specified command queue, user repository, command coalescer
+     * and session manager.
+     *
+     * @param queue      The queue that stores the commands to be executed.
+     * @param repository The user repository to interact with.
+     * @param coalescer  The coalescer eliminating the redundant commands, or null for executing every command.
+     * @param sessions   The manager of the producer sessions, or null if transactions are not supported.
+     */
+    public CommandExecutor(Queue<String> queue, Repository<User, UserMapper> repository, CommandCoalescer coalescer,
+                           SessionManager sessions) {
         super(queue, repository);
+        this.coalescer = coalescer;
+        this.sessions = sessions;
     }
 
     /**
@@ -34,56 +155,438 @@ public class CommandExecutor extends Consumer<UserRepository> implements Runnabl
     public void run() {
         log("Started consumer");
         while (running) {
-            String commandLine;
-            String[] command;
-            synchronized (queue) {
-                if (queue.isEmpty()) {
-                    continue;
+            List<Command> window = pollWindow();
+            if (window.isEmpty()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            if (coalescer == null) {
+                complete(window.get(0), execute(window.get(0)));
+            } else {
+                synchronized (repository) {
+                    for (CommandCoalescer.Step step : coalescer.coalesce(window)) {
+                        complete(step.command(), process(step));
+                    }
+                    lastPrintedUsers = List.of();
+                }
+            }
+            recordLatency(start, window.size());
+        }
+    }
+
+    /**
+     * Reports the completion of a polled command to the queue if the queue tracks it,
+     * and notifies the completion listener if a listener is set.
+     *
+     * @param command The processed command.
+     * @param result  The result of the command.
+     */
+    private void complete(Command command, CommandResult result) {
+        if (queue instanceof CompletionTracking tracking) {
+            tracking.complete(command.getLine());
+        }
+        CompletionListener listener = completionListener;
+        if (listener != null) {
+            listener.onCompleted(command, result);
+        }
+    }
+
+    /**
+     * Executes a single command and logs its results.
+     *
+     * @param command The command to be executed.
+     * @return The result of the command.
+     */
+    private CommandResult execute(Command command) {
+        if (command.getType() == CommandType.SESSION && sessions != null) {
+            return executeInSession(command);
+        }
+        return execute(command, repository);
+    }
+
+    /**
+     * Executes a single command on the given repository and logs its results.
+     *
+     * @param command The command to be executed.
+     * @param target  The repository used by the command.
+     * @return The result of the command.
+     */
+    private CommandResult execute(Command command, Repository<User, UserMapper> target) {
+        CommandError error = CommandValidator.validate(command);
+        if (error != null) {
+            return fail(command, error);
+        }
+        return executeValid(command, target);
+    }
+
+    /**
+     * Executes a single validated command on the given repository and logs its results.
+     *
+     * @param command The validated command to be executed.
+     * @param target  The repository used by the command.
+     * @return The result of the command.
+     */
+    private CommandResult executeValid(Command command, Repository<User, UserMapper> target) {
+        try {
+            switch (command.getType()) {
+                case ADD -> {
+                    User user = new User(command.getArgs());
+                    if (!target.addIfAbsent(user)) {
+                        return fail(command, new CommandError(CommandError.Code.DUPLICATE_ID,
+                                command.getLine().indexOf('(') + 1));
+                    }
+                    log("Added user " + user);
+                    return new CommandResult.Added(user);
+                }
+                case ADD_IF_ABSENT -> {
+                    User user = new User(command.getArgs());
+                    if (!target.addIfAbsent(user)) {
+                        log("User with id " + user.getId() + " already exists");
+                        return new CommandResult.AlreadyExists(user.getId());
+                    }
+                    log("Added user " + user);
+                    return new CommandResult.Added(user);
+                }
+                case BEGIN, COMMIT, ROLLBACK -> {
+                    return fail(command, new CommandError(CommandError.Code.NOT_IN_TRANSACTION, 0));
+                }
+                case DELETE_ALL -> {
+                    int count = target.deleteAll();
+                    log("Deleted all users");
+                    return new CommandResult.Deleted(count);
                 }
-                commandLine = queue.poll();
+                case HELP -> {
+                    log("Available commands:");
+                    HELP_LINES.forEach(this::log);
+                    return new CommandResult.Help(HELP_LINES);
+                }
+                case PRINT_ALL -> {
+                    log("Users:");
+                    if (coalescer == null) {
+                        return printAll(target);
+                    }
+                    lastPrintedUsers = target.getAll();
+                    lastPrintedUsers.forEach(this::log);
+                    return new CommandResult.Users(lastPrintedUsers);
+                }
+                case SESSION -> {
+                    return fail(command, new CommandError(CommandError.Code.UNKNOWN_COMMAND, 0));
+                }
+                case UPSERT -> {
+                    User user = new User(command.getArgs());
+                    target.upsert(user);
+                    log("Upserted user " + user);
+                    return new CommandResult.Upserted(user);
+                }
+                default -> throw new IllegalStateException("Unhandled command type " + command.getType());
+            }
+        } catch (Throwable e) {
+            CommandResult result = fail(command, new CommandError(CommandError.Code.EXECUTION_FAILED, 0));
+            logError(e.getClass().getSimpleName() + " - " + e.getMessage());
+            return result;
+        }
+    }
+
+    /**
+     * Prints the users of the given repository one by one, without loading all of them into a list first.
+     * The printed users are only collected for the result if the result is used, i.e. if a completion listener
+     * is set or the output is deferred, otherwise the result contains no users.
+     *
+     * @param target The repository of the users.
+     * @return The result of the PrintAll command.
+     * @throws SQLException if a database access error occurs.
+     */
+    private CommandResult printAll(Repository<User, UserMapper> target) throws SQLException {
+        if (completionListener == null && deferredOutput == null) {
+            target.forEach(this::log);
+            return new CommandResult.Users(List.of());
+        }
+        List<User> users = new ArrayList<>();
+        target.forEach(user -> {
+            log(user);
+            users.add(user);
+        });
+        return new CommandResult.Users(users);
+    }
+
+    /**
+     * Executes a command already parsed and validated by an earlier stage, collecting its output instead of
+     * printing it. The executor must be used by a single thread at a time.
+     * <p>
+     * The collected log lines keep the original objects, e.g. the users printed by PrintAll, so their formatting
+     * can be left to the rendering stage.
+     *
+     * @param command The command to be executed.
+     * @param error   The error found by the validation of the command, or null if the command is valid.
+     * @param output  The list collecting the output of the command.
+     * @return The result of the command.
+     */
+    public CommandResult executeDeferred(Command command, CommandError error, List<Output> output) {
+        deferredOutput = output;
+        try {
+            if (error != null) {
+                return fail(command, error);
+            }
+            if (command.getType() == CommandType.SESSION && sessions != null) {
+                return executeInSession(command);
             }
-            command = commandLine.trim().split(" *\\(", 2);
-            if (command.length == 2 && command[1].endsWith(")")) {
-                command[1] = command[1].substring(0, command[1].length() - 1);
+            return executeValid(command, repository);
+        } finally {
+            deferredOutput = null;
+        }
+    }
+
+    /**
+     * Executes the next command of the session of a session marker, while holding the lock of the session.
+     * The lines which are not markers issued by a session are rejected as unknown commands.
+     * The transactional commands control the transaction of the session, the other commands are executed
+     * on the transactional repository during a transaction, or on the shared repository otherwise.
+     *
+     * @param marker The session marker.
+     * @return The result of the command.
+     */
+    private CommandResult executeInSession(Command marker) {
+        Session session = sessions.claim(marker.getLine());
+        if (session == null) {
+            return fail(marker, new CommandError(CommandError.Code.UNKNOWN_COMMAND, 0));
+        }
+        synchronized (session) {
+            String line = session.poll();
+            if (line == null) {
+                return fail(marker, new CommandError(CommandError.Code.UNKNOWN_COMMAND, 0));
             }
+            Command command = new Command(line);
             try {
-                switch (command[0].toLowerCase()) {
-                    case "add" -> {
-                        User user = new User(command[1]);
-                        repository.add(user);
-                        log("Added user " + user);
-                        continue;
+                switch (command.getType()) {
+                    case BEGIN -> {
+                        if (session.isInTransaction()) {
+                            return fail(command, new CommandError(CommandError.Code.ALREADY_IN_TRANSACTION, 0));
+                        }
+                        session.begin();
+                        log("Began transaction");
                     }
-                    case "deleteall" -> {
-                        repository.deleteAll();
-                        log("Deleted all users");
-                        continue;
+                    case COMMIT -> {
+                        if (!session.isInTransaction()) {
+                            return fail(command, new CommandError(CommandError.Code.NOT_IN_TRANSACTION, 0));
+                        }
+                        if (session.isAborted()) {
+                            session.endAborted();
+                            return fail(command, new CommandError(CommandError.Code.TRANSACTION_ABORTED, 0));
+                        }
+                        session.commit();
+                        log("Committed transaction");
                     }
-                    case "help" -> {
-                        log("Available commands:");
-                        log("- Add (id, guid, name): Adds a new user");
-                        log("- DeleteAll: Deletes all the users");
-                        log("- Help: Shows this help menu");
-                        log("- PrintAll: Prints all the users");
-                        continue;
+                    case ROLLBACK -> {
+                        if (!session.isInTransaction()) {
+                            return fail(command, new CommandError(CommandError.Code.NOT_IN_TRANSACTION, 0));
+                        }
+                        if (session.isAborted()) {
+                            session.endAborted();
+                        } else {
+                            session.rollback();
+                        }
+                        log("Rolled back transaction");
                     }
-                    case "printall" -> {
-                        log("Users:");
-                        for (User user : repository.getAll()) {
-                            log(user);
+                    default -> {
+                        if (session.isAborted()) {
+                            return fail(command, new CommandError(CommandError.Code.TRANSACTION_ABORTED, 0));
                         }
-                        continue;
+                        return execute(command, session.getRepository(repository));
                     }
                 }
-                logError("Command " + command[0] + " was not found, enter \"Help\" to list the available commands");
+                return new CommandResult.Transaction(command.getType());
             } catch (Throwable e) {
-                logError("Failed to execute command \"" + command[0] + " " + command[1] + "\", " +
-                        "enter \"Help\" to list the available commands");
+                CommandResult result = fail(command, new CommandError(CommandError.Code.EXECUTION_FAILED, 0));
                 logError(e.getClass().getSimpleName() + " - " + e.getMessage());
-                for (StackTraceElement stackTraceElement : e.getStackTrace()) {
-                    logError(stackTraceElement);
+                return result;
+            } finally {
+                session.touch();
+            }
+        }
+    }
+
+    /**
+     * Logs and counts the error of a command.
+     *
+     * @param command The failed command.
+     * @param error   The error of the command.
+     * @return The result of the failed command.
+     */
+    private CommandResult fail(Command command, CommandError error) {
+        errorCounts.incrementAndGet(error.code().ordinal());
+        logError(error.format(command));
+        return new CommandResult.Failed(error);
+    }
+
+    /**
+     * Gets the number of the commands which failed with the given error code.
+     *
+     * @param code The error code.
+     * @return The number of the failed commands.
+     */
+    public long getErrorCount(CommandError.Code code) {
+        return errorCounts.get(code.ordinal());
+    }
+
+    /**
+     * Formats the failed commands of the given executors by their error codes.
+     *
+     * @param executors The executors.
+     * @return The summary of the error counters.
+     */
+    public static String getErrorStats(Collection<CommandExecutor> executors) {
+        return getErrorStats(code -> executors.stream().mapToLong(executor -> executor.getErrorCount(code)).sum());
+    }
+
+    /**
+     * Gets a human-readable summary of the failed commands by their error codes.
+     *
+     * @param errorCounter The function returning the number of the failed commands with the given error code.
+     * @return The summary of the error counters.
+     */
+    public static String getErrorStats(ToLongFunction<CommandError.Code> errorCounter) {
+        StringBuilder sb = new StringBuilder("Failed commands:");
+        for (CommandError.Code code : CommandError.Code.values()) {
+            sb.append(' ').append(code).append(": ").append(errorCounter.applyAsLong(code));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Logs a message, or collects it during a deferred execution.
+     *
+     * @param msg The message to be logged.
+     */
+    @Override
+    public void log(Object msg) {
+        if (deferredOutput != null) {
+            deferredOutput.add(new Output(msg, false));
+            return;
+        }
+        super.log(msg);
+    }
+
+    /**
+     * Logs an error message, or collects it during a deferred execution.
+     *
+     * @param msg The error message to be logged.
+     */
+    @Override
+    public void logError(Object msg) {
+        if (deferredOutput != null) {
+            deferredOutput.add(new Output(msg, true));
+            return;
+        }
+        super.logError(msg);
+    }
+
+    /**
+     * Polls the next commands from the queue, a single one without coalescer,
+     * or up to the window size of the coalescer.
+     * If the queue is empty, it waits for a short time for new commands.
+     * A consumer stopped during the waiting doesn't take any commands, leaving them for the running consumers.
+     *
+     * @return The polled commands, empty if the queue was empty.
+     */
+    private List<Command> pollWindow() {
+        int windowSize = coalescer == null ? 1 : coalescer.getWindowSize();
+        List<Command> window = new ArrayList<>(windowSize);
+        synchronized (queue) {
+            if (queue.isEmpty()) {
+                try {
+                    queue.wait(POLL_TIMEOUT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
                 }
             }
+            while (running && window.size() < windowSize && !queue.isEmpty()) {
+                window.add(new Command(queue.poll()));
+            }
+        }
+        return window;
+    }
+
+    /**
+     * Updates the average command processing time and the last activity time.
+     *
+     * @param start        The System.nanoTime() value of the moment when the processing started.
+     * @param commandCount The number of the processed commands.
+     */
+    private void recordLatency(long start, int commandCount) {
+        long now = System.nanoTime();
+        long latency = (now - start) / commandCount;
+        long average = averageLatencyNanos;
+        averageLatencyNanos = average == 0 ? latency : average + (latency - average) / 8;
+        lastActiveNanos = now;
+    }
+
+    /**
+     * Processes a step planned by the coalescer, either by executing its command
+     * or by only logging the already known outcome of it.
+     *
+     * @param step The step to be processed.
+     * @return The result of the command.
+     */
+    private CommandResult process(CommandCoalescer.Step step) {
+        switch (step.action()) {
+            case EXECUTE -> {
+                return execute(step.command());
+            }
+            case SKIP_ADD -> {
+                User user = new User(step.command().getArgs());
+                log("Added user " + user);
+                return new CommandResult.Added(user);
+            }
+            case SKIP_DELETE_ALL -> {
+                log("Deleted all users");
+                return new CommandResult.Deleted(0);
+            }
+            case EMPTY_PRINT_ALL -> {
+                log("Users:");
+                return new CommandResult.Users(List.of());
+            }
+            case REPEAT_PRINT_ALL -> {
+                log("Users:");
+                lastPrintedUsers.forEach(this::log);
+                return new CommandResult.Users(lastPrintedUsers);
+            }
+            default -> throw new IllegalStateException("Unhandled coalescer action " + step.action());
+        }
+    }
+
+    /**
+     * The Output record is a log line collected by a deferred execution.
+     *
+     * @param message The logged object, formatted by its toString method when it is rendered.
+     * @param error   True if it is an error line, false otherwise.
+     */
+    public record Output(Object message, boolean error) {
+    }
+
+    /**
+     * The CompletionListener interface is notified by the CommandExecutor after processing each command.
+     * It is called on the thread of the executor, so it should return quickly.
+     */
+    @FunctionalInterface
+    public interface CompletionListener {
+        /**
+         * Called after a command was processed.
+         *
+         * @param command The processed command.
+         * @param success True if the command was processed successfully, false if it failed or was not found.
+         */
+        void onCompleted(Command command, boolean success);
+
+        /**
+         * Called after a command was processed, with its typed result.
+         * By default, it only passes the success of the command to {@link #onCompleted(Command, boolean)}.
+         *
+         * @param command The processed command.
+         * @param result  The result of the command.
+         */
+        default void onCompleted(Command command, CommandResult result) {
+            onCompleted(command, result.isSuccess());
         }
     }
 }
@@ -19,8 +19,9 @@ public abstract class Consumer<R> extends QueueHolder {
 
     /**
      * A flag indicating whether the consumer is running or not.
+     * It is volatile, because the consumer can be stopped from other threads.
      */
-    protected boolean running;
+    protected volatile boolean running;
 
     /**
      * Constructs a new Consumer with the specified queue and repository.
@@ -37,8 +38,18 @@ public abstract class Consumer<R> extends QueueHolder {
     /**
      * Stops the consumer.
      * This method sets the running flag to false, indicating that the consumer should stop processing items.
+     * The item being processed is still finished, but no new items are taken from the queue.
      */
     public void stop() {
         running = false;
     }
+
+    /**
+     * Checks if the consumer is running.
+     *
+     * @return True if the consumer was not stopped yet, false otherwise.
+     */
+    public boolean isRunning() {
+        return running;
+    }
 }
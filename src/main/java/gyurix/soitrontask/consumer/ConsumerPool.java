@@ -0,0 +1,230 @@
+package gyurix.soitrontask.consumer;
+
+import gyurix.soitrontask.QueueHolder;
+import gyurix.soitrontask.command.CommandError;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The ConsumerPool class is a supervisor, which grows and shrinks a pool of CommandExecutors based on the depth
+ * of the command queue and the measured command processing times.
+ * <p>
+ * The pool periodically estimates the time needed for draining the queue with the current consumers.
+ * If the estimate exceeds the target drain time in several consecutive samples, it starts as many new consumers
+ * at once as needed for meeting the target, up to the maximum pool size. If the queue is empty in several
+ * consecutive samples, it retires the consumers which have been idle for longer than the idle timeout,
+ * down to the minimum pool size. The required consecutive samples provide hysteresis against flapping.
+ * <p>
+ * Retired consumers finish the command they are processing before exiting, the remaining commands stay in the queue
+ * for the other consumers. Once a consumer exits, it is removed from the pool, and its error counters are added
+ * to the counters of the retired consumers, so a long-running pool does not keep its retired consumers.
+ */
+public class ConsumerPool extends QueueHolder {
+    /**
+     * The consumers of the pool, including the ones which are retired but still finishing their last command.
+     */
+    private final List<CommandExecutor> consumers = new ArrayList<>();
+
+    /**
+     * The number of the failed commands of the exited consumers by their error codes.
+     */
+    private final long[] exitedErrorCounts = new long[CommandError.Code.values().length];
+
+    private final Supplier<CommandExecutor> factory;
+
+    private final Settings settings;
+
+    private int idleSamples;
+
+    private int overloadedSamples;
+
+    private int peakSize;
+
+    private int startedCount;
+
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new ConsumerPool with the specified command queue, consumer factory and settings.
+     *
+     * @param queue    The queue that stores the commands to be executed.
+     * @param factory  The factory creating new consumers, which must consume the same queue.
+     * @param settings The settings of the pool.
+     */
+    public ConsumerPool(Queue<String> queue, Supplier<CommandExecutor> factory, Settings settings) {
+        super(queue);
+        this.factory = factory;
+        this.settings = settings;
+    }
+
+    /**
+     * Gets the consumers of the pool, including the retired ones which are still finishing their last command.
+     *
+     * @return The list of the consumers.
+     */
+    public synchronized List<CommandExecutor> getConsumers() {
+        return new ArrayList<>(consumers);
+    }
+
+    /**
+     * Gets a human-readable summary of the failed commands of all the consumers by their error codes,
+     * including the consumers which already exited.
+     *
+     * @return The summary of the error counters.
+     */
+    public synchronized String getErrorStats() {
+        return CommandExecutor.getErrorStats(code -> exitedErrorCounts[code.ordinal()] +
+                consumers.stream().mapToLong(consumer -> consumer.getErrorCount(code)).sum());
+    }
+
+    /**
+     * Gets the largest number of running consumers since the pool was started.
+     *
+     * @return The peak size of the pool.
+     */
+    public synchronized int getPeakSize() {
+        return peakSize;
+    }
+
+    /**
+     * Gets the number of running consumers.
+     *
+     * @return The current size of the pool.
+     */
+    public synchronized int getSize() {
+        return (int) consumers.stream().filter(Consumer::isRunning).count();
+    }
+
+    /**
+     * Runs the supervisor of the pool.
+     * It starts the minimum number of consumers, then periodically resizes the pool until it is stopped.
+     */
+    public void run() {
+        synchronized (this) {
+            if (running) {
+                startConsumers(settings.minConsumers());
+            }
+        }
+        while (running) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(settings.sampleIntervalMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            resize();
+        }
+    }
+
+    /**
+     * Stops the supervisor and all the consumers of the pool.
+     */
+    public synchronized void stop() {
+        running = false;
+        consumers.forEach(Consumer::stop);
+    }
+
+    /**
+     * Samples the queue and the consumers, and grows or shrinks the pool if needed.
+     */
+    private synchronized void resize() {
+        if (!running) {
+            return;
+        }
+        int size = getSize();
+        int depth;
+        synchronized (queue) {
+            depth = queue.size();
+        }
+        long latency = consumers.stream().filter(Consumer::isRunning)
+                .mapToLong(CommandExecutor::getAverageLatencyNanos).max().orElse(0);
+        long targetNanos = TimeUnit.MILLISECONDS.toNanos(settings.targetDrainMillis());
+        long drainNanos = size == 0 ? Long.MAX_VALUE : depth * Math.max(latency, 1) / size;
+
+        overloadedSamples = depth > 0 && drainNanos > targetNanos ? overloadedSamples + 1 : 0;
+        idleSamples = depth == 0 ? idleSamples + 1 : 0;
+
+        if (overloadedSamples >= settings.hysteresisSamples() && size < settings.maxConsumers()) {
+            long needed = (long) depth * Math.max(latency, 1) / targetNanos + 1;
+            int target = (int) Math.min(settings.maxConsumers(), Math.max(size + 1, needed));
+            startConsumers(target - size);
+            overloadedSamples = 0;
+            log("Scaled up to " + target + " consumers, queue depth: " + depth);
+        } else if (idleSamples >= settings.hysteresisSamples() && size > settings.minConsumers()) {
+            retireIdleConsumers(size);
+        }
+    }
+
+    /**
+     * Retires the consumers idle for longer than the idle timeout, keeping at least the minimum number of consumers.
+     *
+     * @param size The number of running consumers.
+     */
+    private void retireIdleConsumers(int size) {
+        long now = System.nanoTime();
+        long idleNanos = TimeUnit.MILLISECONDS.toNanos(settings.idleTimeoutMillis());
+        int retired = 0;
+        for (CommandExecutor consumer : consumers) {
+            if (size - retired <= settings.minConsumers()) {
+                break;
+            }
+            if (consumer.isRunning() && now - consumer.getLastActiveNanos() > idleNanos) {
+                consumer.stop();
+                ++retired;
+            }
+        }
+        if (retired > 0) {
+            log("Scaled down to " + (size - retired) + " consumers");
+        }
+    }
+
+    /**
+     * Removes an exited consumer from the pool, keeping its error counters.
+     *
+     * @param consumer The consumer whose thread exited.
+     */
+    private synchronized void removeConsumer(CommandExecutor consumer) {
+        consumers.remove(consumer);
+        for (CommandError.Code code : CommandError.Code.values()) {
+            exitedErrorCounts[code.ordinal()] += consumer.getErrorCount(code);
+        }
+    }
+
+    /**
+     * Creates and starts the given number of consumers.
+     *
+     * @param count The number of consumers to be started.
+     */
+    private void startConsumers(int count) {
+        for (int i = 0; i < count; ++i) {
+            CommandExecutor consumer = factory.get();
+            consumers.add(consumer);
+            new Thread(() -> {
+                try {
+                    consumer.run();
+                } finally {
+                    removeConsumer(consumer);
+                }
+            }, "consumer-" + ++startedCount).start();
+        }
+        peakSize = Math.max(peakSize, getSize());
+    }
+
+    /**
+     * The Settings record holds the sizing settings of a ConsumerPool.
+     *
+     * @param minConsumers         The minimum number of consumers.
+     * @param maxConsumers         The maximum number of consumers.
+     * @param targetDrainMillis    The time in milliseconds under which the queue should be drained.
+     * @param idleTimeoutMillis    The time in milliseconds after which an idle consumer can be retired.
+     * @param sampleIntervalMillis The time in milliseconds between two samples of the queue.
+     * @param hysteresisSamples    The number of consecutive samples needed for resizing the pool.
+     */
+    public record Settings(int minConsumers, int maxConsumers, long targetDrainMillis, long idleTimeoutMillis,
+                           long sampleIntervalMillis, int hysteresisSamples) {
+    }
+}
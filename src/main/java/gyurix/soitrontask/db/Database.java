@@ -1,6 +1,8 @@
 package gyurix.soitrontask.db;
 
 import gyurix.soitrontask.db.mapper.DTOMapper;
+import gyurix.soitrontask.db.mapper.ResultMapper;
+import lombok.Getter;
 import lombok.SneakyThrows;
 
 import java.sql.Connection;
@@ -15,6 +17,7 @@ import java.util.List;
 /**
  * The Database class represents a database connection and provides methods for executing queries
  * and managing entity mappers.
+ * The precompiled queries and updates prepared on the connection are closed together with the connection.
  */
 @SuppressWarnings("unchecked")
 public final class Database {
@@ -22,6 +25,17 @@ public final class Database {
 
     private final HashMap<Class<?>, DTOMapper<?>> mappers = new HashMap<>();
 
+    /**
+     * The precompiled queries and updates prepared on the connection.
+     */
+    private final List<AutoCloseable> statements = new ArrayList<>();
+
+    /**
+     * The URL of the database, which can be used for opening further connections to the same database.
+     */
+    @Getter
+    private final String url;
+
     /**
      * Constructs a Database object with the specified database URL.
      *
@@ -30,6 +44,7 @@ public final class Database {
      */
     @SneakyThrows
     public Database(String url) {
+        this.url = url;
         connection = DriverManager.getConnection(url);
     }
 
@@ -56,10 +71,45 @@ public final class Database {
     }
 
     /**
-     * Closes the database connection
+     * Starts an explicit transaction on the connection, by disabling auto-commit until the transaction is
+     * committed or rolled back.
+     *
+     * @param isolationLevel The transaction isolation level, one of the Connection.TRANSACTION_* constants.
+     * @throws SQLException if a database access error occurs.
+     */
+    public void beginTransaction(int isolationLevel) throws SQLException {
+        connection.setTransactionIsolation(isolationLevel);
+        connection.setAutoCommit(false);
+    }
+
+    /**
+     * Closes the precompiled queries and updates prepared on the connection, then the database connection.
+     *
+     * @throws SQLException if a database access error occurs.
      */
     public void closeConnection() throws SQLException {
-        connection.close();
+        try {
+            for (AutoCloseable statement : statements) {
+                statement.close();
+            }
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new SQLException("Failed to close a prepared statement", e);
+        } finally {
+            statements.clear();
+            connection.close();
+        }
+    }
+
+    /**
+     * Commits the explicit transaction and restores auto-commit on the connection.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public void commit() throws SQLException {
+        connection.commit();
+        connection.setAutoCommit(true);
     }
 
     /**
@@ -71,7 +121,10 @@ public final class Database {
      * @param <T>           The type of the result handler.
      * @return A list of objects representing the query results, or null if the query is an update statement.
      * @throws SQLException if a database access error occurs.
+     * @deprecated Compiles the statement on every call; use {@link #prepareQuery(String, ResultMapper)} or
+     * {@link #prepareUpdate(String)} and reuse the returned statement instead.
      */
+    @Deprecated
     public <T> List<T> executeRawQuery(String query, Class<T> resultHandler, Object... params) throws SQLException {
         try (PreparedStatement statement = connection.prepareStatement(query)) {
             if (!populateQueryParams(statement, params)) {
@@ -81,6 +134,49 @@ public final class Database {
         }
     }
 
+    /**
+     * Prepares a precompiled query returning entities mapped by the given result mapper.
+     *
+     * @param sql          The SQL query.
+     * @param resultMapper The mapper used for mapping the query results.
+     * @param <T>          The type of the query results.
+     * @return The prepared query.
+     * @throws SQLException if a database access error occurs.
+     */
+    public <T> Query<T> prepareQuery(String sql, ResultMapper<T> resultMapper) throws SQLException {
+        Query<T> query = new Query<>(connection, sql, resultMapper);
+        statements.add(query);
+        return query;
+    }
+
+    /**
+     * Prepares a precompiled update statement without entity parameters.
+     *
+     * @param sql The SQL statement.
+     * @return The prepared update statement.
+     * @throws SQLException if a database access error occurs.
+     */
+    public Update<Void> prepareUpdate(String sql) throws SQLException {
+        Update<Void> update = new Update<>(connection, sql, null);
+        statements.add(update);
+        return update;
+    }
+
+    /**
+     * Prepares a precompiled update statement with an entity parameter bound by the given parameter mapper.
+     *
+     * @param sql         The SQL statement.
+     * @param paramMapper The mapper used for binding the entity parameter.
+     * @param <P>         The type of the entity parameter.
+     * @return The prepared update statement.
+     * @throws SQLException if a database access error occurs.
+     */
+    public <P> Update<P> prepareUpdate(String sql, DTOMapper<P> paramMapper) throws SQLException {
+        Update<P> update = new Update<>(connection, sql, paramMapper);
+        statements.add(update);
+        return update;
+    }
+
     /**
      * Populates the query parameters in the prepared statement.
      *
@@ -112,4 +208,14 @@ public final class Database {
     public <T> void registerMapper(Class<T> cl, DTOMapper<T> mapper) {
         mappers.put(cl, mapper);
     }
+
+    /**
+     * Rolls back the explicit transaction and restores auto-commit on the connection.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public void rollback() throws SQLException {
+        connection.rollback();
+        connection.setAutoCommit(true);
+    }
 }
@@ -0,0 +1,115 @@
+package gyurix.soitrontask.db;
+
+import gyurix.soitrontask.db.mapper.ResultMapper;
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Query class represents a precompiled SQL query returning entities.
+ * It holds the SQL, the result mapper and the cached prepared statement, so executing it
+ * needs no statement preparation, mapper lookups or parameter arrays.
+ * <p>
+ * The methods are synchronized, because the cached statement can be used by a single thread at a time.
+ *
+ * @param <T> The type of the query results.
+ */
+public final class Query<T> implements AutoCloseable {
+    @Getter
+    private final String sql;
+
+    private final ResultMapper<T> resultMapper;
+
+    private final PreparedStatement statement;
+
+    /**
+     * Constructs a Query object by preparing the given SQL on the given connection.
+     *
+     * @param connection   The connection on which the query should be prepared.
+     * @param sql          The SQL query.
+     * @param resultMapper The mapper used for mapping the query results.
+     * @throws SQLException if a database access error occurs.
+     */
+    Query(Connection connection, String sql, ResultMapper<T> resultMapper) throws SQLException {
+        this.sql = sql;
+        this.resultMapper = resultMapper;
+        this.statement = connection.prepareStatement(sql);
+    }
+
+    /**
+     * Closes the cached prepared statement.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Override
+    public synchronized void close() throws SQLException {
+        statement.close();
+    }
+
+    /**
+     * Checks whether the cached prepared statement is closed.
+     *
+     * @return True if the statement is closed.
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized boolean isClosed() throws SQLException {
+        return statement.isClosed();
+    }
+
+    /**
+     * Executes the query without parameters.
+     *
+     * @return A list of objects representing the query results.
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized List<T> list() throws SQLException {
+        return readResults();
+    }
+
+    /**
+     * Executes the query with a single int parameter.
+     *
+     * @param param The first parameter of the query.
+     * @return A list of objects representing the query results.
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized List<T> list(int param) throws SQLException {
+        statement.setInt(1, param);
+        return readResults();
+    }
+
+    /**
+     * Executes the query with two int parameters.
+     *
+     * @param param1 The first parameter of the query.
+     * @param param2 The second parameter of the query.
+     * @return A list of objects representing the query results.
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized List<T> list(int param1, int param2) throws SQLException {
+        statement.setInt(1, param1);
+        statement.setInt(2, param2);
+        return readResults();
+    }
+
+    /**
+     * Executes the prepared statement and maps its results.
+     *
+     * @return A list of objects representing the query results.
+     * @throws SQLException if a database access error occurs.
+     */
+    private List<T> readResults() throws SQLException {
+        List<T> results = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                results.add(resultMapper.get(resultSet));
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,99 @@
+package gyurix.soitrontask.db;
+
+import gyurix.soitrontask.db.mapper.DTOMapper;
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * The Update class represents a precompiled SQL statement modifying the database.
+ * It holds the SQL, the parameter mapper and the cached prepared statement, so executing it
+ * needs no statement preparation, mapper lookups or parameter arrays.
+ * <p>
+ * The methods are synchronized, because the cached statement can be used by a single thread at a time.
+ *
+ * @param <P> The type of the entity parameter of the statement, Void for statements without entity parameters.
+ */
+public final class Update<P> implements AutoCloseable {
+    private final DTOMapper<P> paramMapper;
+
+    @Getter
+    private final String sql;
+
+    private final PreparedStatement statement;
+
+    /**
+     * Constructs an Update object by preparing the given SQL on the given connection.
+     *
+     * @param connection  The connection on which the statement should be prepared.
+     * @param sql         The SQL statement.
+     * @param paramMapper The mapper used for binding the entity parameter, or null for statements without entity
+     *                    parameters.
+     * @throws SQLException if a database access error occurs.
+     */
+    Update(Connection connection, String sql, DTOMapper<P> paramMapper) throws SQLException {
+        this.sql = sql;
+        this.paramMapper = paramMapper;
+        this.statement = connection.prepareStatement(sql);
+    }
+
+    /**
+     * Closes the cached prepared statement.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Override
+    public synchronized void close() throws SQLException {
+        statement.close();
+    }
+
+    /**
+     * Checks whether the cached prepared statement is closed.
+     *
+     * @return True if the statement is closed.
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized boolean isClosed() throws SQLException {
+        return statement.isClosed();
+    }
+
+    /**
+     * Executes the statement without parameters.
+     *
+     * @return The number of the affected rows.
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized int execute() throws SQLException {
+        return statement.executeUpdate();
+    }
+
+    /**
+     * Executes the statement with a single int parameter.
+     *
+     * @param param The parameter of the statement.
+     * @return The number of the affected rows.
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized int execute(int param) throws SQLException {
+        statement.setInt(1, param);
+        return statement.executeUpdate();
+    }
+
+    /**
+     * Executes the statement with an entity parameter bound by the parameter mapper.
+     *
+     * @param param The entity parameter of the statement.
+     * @return The number of the affected rows.
+     * @throws SQLException          if a database access error occurs.
+     * @throws IllegalStateException if the statement was prepared without a parameter mapper.
+     */
+    public synchronized int execute(P param) throws SQLException {
+        if (paramMapper == null) {
+            throw new IllegalStateException("The update has no entity parameter: " + sql);
+        }
+        paramMapper.add(statement, 1, param);
+        return statement.executeUpdate();
+    }
+}
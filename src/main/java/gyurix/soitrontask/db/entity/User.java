@@ -1,29 +1,36 @@
 package gyurix.soitrontask.db.entity;
 
+import gyurix.soitrontask.db.mapper.annotation.Column;
+import gyurix.soitrontask.db.mapper.annotation.GenerateMapper;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 /**
  * The User class represents a user entity in the system.
  * It encapsulates the properties of a user, such as ID, GUID, and name.
+ * Its UserMapper is generated from the column annotations of its fields.
  */
 @Data
+@GenerateMapper(packageName = "gyurix.soitrontask.db.mapper")
 @NoArgsConstructor
 public class User {
 
     /**
      * The GUID (Globally Unique Identifier) of the user.
      */
+    @Column(2)
     private String guid;
 
     /**
      * The ID of the user.
      */
+    @Column(1)
     private int id;
 
     /**
      * The name of the user.
      */
+    @Column(3)
     private String name;
 
     /**
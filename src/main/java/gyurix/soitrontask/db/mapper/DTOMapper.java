@@ -7,10 +7,11 @@ import java.sql.SQLException;
 /**
  * The DTOMapper interface defines the contract for mapping between database entities and DTOs (Data Transfer Objects).
  * It provides methods for adding DTO objects to a prepared statement and extracting DTO objects from a result set.
+ * The queries only need its read-only side, the ResultMapper.
  *
  * @param <T> The type of the DTO object.
  */
-public interface DTOMapper<T> {
+public interface DTOMapper<T> extends ResultMapper<T> {
 
     /**
      * Adds a DTO object to a prepared statement at the specified index.
@@ -30,5 +31,6 @@ public interface DTOMapper<T> {
      * @return The DTO object extracted from the result set.
      * @throws SQLException if a database access error occurs.
      */
+    @Override
     T get(ResultSet resultSet) throws SQLException;
 }
@@ -0,0 +1,22 @@
+package gyurix.soitrontask.db.mapper;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * The ResultMapper interface is the read-only side of a mapper, extracting objects from the rows of a result set.
+ * It is enough for the queries whose results are not entities, e.g. aggregates, which are never bound as parameters.
+ *
+ * @param <T> The type of the extracted objects.
+ */
+@FunctionalInterface
+public interface ResultMapper<T> {
+    /**
+     * Extracts an object from the current row of a result set.
+     *
+     * @param resultSet The result set containing the data to extract the object from.
+     * @return The object extracted from the result set.
+     * @throws SQLException if a database access error occurs.
+     */
+    T get(ResultSet resultSet) throws SQLException;
+}
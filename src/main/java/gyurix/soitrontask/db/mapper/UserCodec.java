@@ -0,0 +1,108 @@
+package gyurix.soitrontask.db.mapper;
+
+import gyurix.soitrontask.db.entity.User;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The UserCodec class converts User entities to and from a compact binary form used by the key-value stores,
+ * where the id of the user is stored as the key.
+ * <p>
+ * The encoded form consists of the guid and the name, each stored as a variable-length encoded
+ * length (0 for null values, length + 1 otherwise) followed by the UTF-8 bytes of the value.
+ */
+public final class UserCodec {
+    private UserCodec() {
+    }
+
+    /**
+     * Decodes a user from its binary form.
+     *
+     * @param id   The id of the user, stored as the key of the encoded value.
+     * @param data The binary form of the user.
+     * @return The decoded User object.
+     */
+    public static User decode(int id, byte[] data) {
+        int[] pos = new int[1];
+        String guid = readString(data, pos);
+        String name = readString(data, pos);
+        return new User(id, guid, name);
+    }
+
+    /**
+     * Encodes the guid and the name of a user to its binary form.
+     *
+     * @param user The user to be encoded.
+     * @return The binary form of the user.
+     */
+    public static byte[] encode(User user) {
+        byte[] guid = user.getGuid() == null ? null : user.getGuid().getBytes(StandardCharsets.UTF_8);
+        byte[] name = user.getName() == null ? null : user.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[getEncodedLength(guid) + getEncodedLength(name)];
+        int pos = writeString(data, 0, guid);
+        writeString(data, pos, name);
+        return data;
+    }
+
+    /**
+     * Gets the number of bytes needed for storing the given value.
+     *
+     * @param value The UTF-8 bytes of the value, or null.
+     * @return The number of bytes needed for the length and the value.
+     */
+    private static int getEncodedLength(byte[] value) {
+        int length = value == null ? 0 : value.length + 1;
+        int size = 1;
+        while (length >= 0x80) {
+            length >>>= 7;
+            ++size;
+        }
+        return value == null ? size : size + value.length;
+    }
+
+    /**
+     * Reads a string value starting at the given position.
+     *
+     * @param data The binary form of the user.
+     * @param pos  The single element array holding the current position, which is advanced past the value.
+     * @return The read value.
+     */
+    private static String readString(byte[] data, int[] pos) {
+        int length = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = data[pos[0]++];
+            length |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        if (length == 0) {
+            return null;
+        }
+        String value = new String(data, pos[0], length - 1, StandardCharsets.UTF_8);
+        pos[0] += length - 1;
+        return value;
+    }
+
+    /**
+     * Writes a string value starting at the given position.
+     *
+     * @param data  The binary form of the user.
+     * @param pos   The position where the value should be written.
+     * @param value The UTF-8 bytes of the value, or null.
+     * @return The position after the written value.
+     */
+    private static int writeString(byte[] data, int pos, byte[] value) {
+        int length = value == null ? 0 : value.length + 1;
+        while (length >= 0x80) {
+            data[pos++] = (byte) (length | 0x80);
+            length >>>= 7;
+        }
+        data[pos++] = (byte) length;
+        if (value != null) {
+            System.arraycopy(value, 0, data, pos, value.length);
+            pos += value.length;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,20 @@
+package gyurix.soitrontask.db.mapper.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The Column annotation maps a field of an entity annotated with {@link GenerateMapper} to a database column.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.FIELD)
+public @interface Column {
+    /**
+     * The 1-based index of the column in the result sets and of the parameter in the insert statements.
+     *
+     * @return The index of the column.
+     */
+    int value();
+}
@@ -0,0 +1,24 @@
+package gyurix.soitrontask.db.mapper.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The GenerateMapper annotation marks an entity class for which a DTOMapper implementation
+ * should be generated at compile time by the MapperProcessor.
+ * <p>
+ * The generated mapper is named after the entity with a "Mapper" suffix, and maps the fields
+ * annotated with {@link Column} to the statement parameters and result set columns.
+ */
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface GenerateMapper {
+    /**
+     * The package of the generated mapper.
+     *
+     * @return The package of the generated mapper.
+     */
+    String packageName();
+}
@@ -0,0 +1,214 @@
+package gyurix.soitrontask.db.mapper.processor;
+
+import gyurix.soitrontask.db.mapper.annotation.Column;
+import gyurix.soitrontask.db.mapper.annotation.GenerateMapper;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The MapperProcessor class is an annotation processor generating DTOMapper implementations
+ * for the entities annotated with {@link GenerateMapper}.
+ * <p>
+ * The generated mappers bind and read the columns with constant indexes through the typed
+ * statement and result set methods, without any reflection, branching or lookups at runtime.
+ */
+public class MapperProcessor extends AbstractProcessor {
+    /**
+     * The package of the DTOMapper interface implemented by the generated mappers.
+     */
+    private static final String DTO_MAPPER_PACKAGE = "gyurix.soitrontask.db.mapper";
+
+    /**
+     * Returns the capitalized form of a field name, used for building accessor names.
+     *
+     * @param name The name of the field.
+     * @return The capitalized name.
+     */
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+
+    /**
+     * Gets the suffix of the JDBC getter and setter methods handling the given type,
+     * e.g. "Int" for {@code getInt} and {@code setInt}.
+     *
+     * @param type The type of a field.
+     * @return The suffix of the JDBC methods, or null if the type is not supported.
+     */
+    private static String getJdbcTypeName(TypeMirror type) {
+        return switch (type.getKind()) {
+            case BOOLEAN -> "Boolean";
+            case BYTE -> "Byte";
+            case SHORT -> "Short";
+            case INT -> "Int";
+            case LONG -> "Long";
+            case FLOAT -> "Float";
+            case DOUBLE -> "Double";
+            case DECLARED -> type.toString().equals("java.lang.String") ? "String" : null;
+            default -> null;
+        };
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Set.of(GenerateMapper.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateMapper.class)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@GenerateMapper can only be used on classes");
+                continue;
+            }
+            TypeElement entity = (TypeElement) element;
+            List<VariableElement> columns = getColumns(entity);
+            if (columns != null) {
+                generate(entity, columns);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reports a compilation error.
+     *
+     * @param element The element causing the error.
+     * @param msg     The error message.
+     */
+    private void error(Element element, String msg) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, msg, element);
+    }
+
+    /**
+     * Writes the source code of the mapper of the given entity.
+     *
+     * @param entity  The entity for which the mapper should be generated.
+     * @param columns The column fields of the entity, ordered by their column indexes.
+     */
+    private void generate(TypeElement entity, List<VariableElement> columns) {
+        String packageName = entity.getAnnotation(GenerateMapper.class).packageName();
+        String entityName = entity.getSimpleName().toString();
+        String entityType = entity.getQualifiedName().toString();
+        String mapperName = entityName + "Mapper";
+        String variable = Character.toLowerCase(entityName.charAt(0)) + entityName.substring(1);
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler()
+                .createSourceFile(packageName + "." + mapperName, entity).openWriter())) {
+            out.println("package " + packageName + ";");
+            out.println();
+            out.println("import " + entityType + ";");
+            if (!packageName.equals(DTO_MAPPER_PACKAGE)) {
+                out.println("import " + DTO_MAPPER_PACKAGE + ".DTOMapper;");
+            }
+            out.println();
+            out.println("import java.sql.PreparedStatement;");
+            out.println("import java.sql.ResultSet;");
+            out.println("import java.sql.SQLException;");
+            out.println();
+            out.println("/**");
+            out.println(" * The " + mapperName + " class is responsible for mapping " + entityName
+                    + " entities between the database and DTOs (Data Transfer Objects).");
+            out.println(" * It is generated by the MapperProcessor from the @Column annotations of the "
+                    + entityName + " class.");
+            out.println(" */");
+            out.println("public class " + mapperName + " implements DTOMapper<" + entityName + "> {");
+            out.println();
+            out.println("    /**");
+            out.println("     * Adds a " + entityName + " object to a prepared statement at the specified index.");
+            out.println("     *");
+            out.println("     * @param statement The prepared statement to add the " + entityName + " object to.");
+            out.println("     * @param index     The index at which to add the " + entityName + " object.");
+            out.println("     * @param " + String.format("%-9s", variable) + " The " + entityName + " object to be added.");
+            out.println("     * @return The number of the added parameters.");
+            out.println("     * @throws SQLException if a database access error occurs.");
+            out.println("     */");
+            out.println("    @Override");
+            out.println("    public int add(PreparedStatement statement, int index, " + entityName + " " + variable
+                    + ") throws SQLException {");
+            for (int i = 0; i < columns.size(); ++i) {
+                VariableElement column = columns.get(i);
+                String getter = (column.asType().getKind() == TypeKind.BOOLEAN ? "is" : "get")
+                        + capitalize(column.getSimpleName().toString());
+                out.println("        statement.set" + getJdbcTypeName(column.asType())
+                        + "(" + (i == 0 ? "index" : "index + " + i) + ", " + variable + "." + getter + "());");
+            }
+            out.println("        return " + columns.size() + ";");
+            out.println("    }");
+            out.println();
+            out.println("    /**");
+            out.println("     * Extracts a " + entityName + " object from a result set.");
+            out.println("     *");
+            out.println("     * @param resultSet The result set containing the data to extract the "
+                    + entityName + " object from.");
+            out.println("     * @return The " + entityName + " object extracted from the result set.");
+            out.println("     * @throws SQLException if a database access error occurs.");
+            out.println("     */");
+            out.println("    @Override");
+            out.println("    public " + entityName + " get(ResultSet resultSet) throws SQLException {");
+            out.println("        " + entityName + " " + variable + " = new " + entityName + "();");
+            for (int i = 0; i < columns.size(); ++i) {
+                VariableElement column = columns.get(i);
+                out.println("        " + variable + ".set" + capitalize(column.getSimpleName().toString())
+                        + "(resultSet.get" + getJdbcTypeName(column.asType()) + "(" + (i + 1) + "));");
+            }
+            out.println("        return " + variable + ";");
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            error(entity, "Failed to generate " + mapperName + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Collects and validates the column fields of an entity.
+     * The column indexes must be unique and continuous starting from 1.
+     *
+     * @param entity The entity class.
+     * @return The column fields ordered by their column indexes, or null if the entity is invalid.
+     */
+    private List<VariableElement> getColumns(TypeElement entity) {
+        List<VariableElement> columns = new ArrayList<>();
+        for (Element member : entity.getEnclosedElements()) {
+            if (member.getKind() == ElementKind.FIELD && member.getAnnotation(Column.class) != null) {
+                columns.add((VariableElement) member);
+            }
+        }
+        columns.sort(Comparator.comparingInt(column -> column.getAnnotation(Column.class).value()));
+        boolean valid = !columns.isEmpty();
+        if (!valid) {
+            error(entity, "@GenerateMapper entity " + entity.getSimpleName() + " has no @Column fields");
+        }
+        for (int i = 0; i < columns.size(); ++i) {
+            VariableElement column = columns.get(i);
+            if (column.getAnnotation(Column.class).value() != i + 1) {
+                error(column, "Column indexes must be unique and continuous starting from 1");
+                valid = false;
+            }
+            if (getJdbcTypeName(column.asType()) == null) {
+                error(column, "Unsupported column type " + column.asType());
+                valid = false;
+            }
+        }
+        return valid ? columns : null;
+    }
+}
@@ -0,0 +1,168 @@
+package gyurix.soitrontask.db.repository;
+
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.mapper.UserCodec;
+import gyurix.soitrontask.db.mapper.UserMapper;
+import org.h2.mvstore.Cursor;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The MVStoreUserRepository class is an alternative of the UserRepository, which stores the users directly
+ * in an H2 MVStore map, bypassing the SQL layer of H2.
+ * <p>
+ * The users are stored in an {@code MVMap<Integer, byte[]>} keyed by their ids, with values encoded by the
+ * {@link UserCodec}. The map is sorted by its keys, so the users are always listed in id order.
+ * The MVMap is thread safe, so unlike the SQL based repositories this repository does not need to lock itself.
+ */
+public class MVStoreUserRepository extends Repository<User, UserMapper> {
+    /**
+     * The name of the map storing the users.
+     */
+    private static final String MAP_NAME = "SUSERS";
+
+    private final MVStore store;
+
+    private MVMap<Integer, byte[]> map;
+
+    /**
+     * Constructs a MVStoreUserRepository object using the specified store.
+     *
+     * @param store The MVStore in which the users should be stored.
+     */
+    public MVStoreUserRepository(MVStore store) {
+        super();
+        this.store = store;
+        initTable();
+    }
+
+    /**
+     * Opens a MVStore with the given settings.
+     *
+     * @param fileName            The file in which the store should be persisted, or null for an in-memory store.
+     * @param autoCommitDelay     The maximum delay in milliseconds of the background commits,
+     *                            or 0 for disabling auto commit.
+     * @param autoCommitBufferKb  The size of the write buffer in kilobytes, after which the changes are committed
+     *                            even before the auto commit delay expires.
+     * @param autoCompactFillRate The fill rate percentage below which the file is compacted by the background thread,
+     *                            or 0 for disabling background compaction.
+     * @return The opened MVStore.
+     */
+    public static MVStore openStore(String fileName, int autoCommitDelay, int autoCommitBufferKb, int autoCompactFillRate) {
+        MVStore.Builder builder = new MVStore.Builder()
+                .autoCommitBufferSize(autoCommitBufferKb)
+                .autoCompactFillRate(autoCompactFillRate);
+        if (fileName != null) {
+            builder.fileName(fileName);
+        }
+        if (autoCommitDelay == 0) {
+            builder.autoCommitDisabled();
+        }
+        MVStore store = builder.open();
+        if (autoCommitDelay != 0) {
+            store.setAutoCommitDelay(autoCommitDelay);
+        }
+        return store;
+    }
+
+    /**
+     * Adds a user to the repository.
+     *
+     * @param user The User object representing the user to be added.
+     * @throws SQLException if a user with the same id already exists.
+     */
+    @Override
+    public void add(User user) throws SQLException {
+        if (map.putIfAbsent(user.getId(), UserCodec.encode(user)) != null) {
+            throw new SQLException("Unique index or primary key violation: ID = " + user.getId(), "23505");
+        }
+    }
+
+    /**
+     * Adds a user to the repository, unless a user with the same id already exists.
+     *
+     * @param user The User object representing the user to be added.
+     * @return True if the user was added, false if a user with the same id already exists.
+     */
+    @Override
+    public boolean addIfAbsent(User user) {
+        return map.putIfAbsent(user.getId(), UserCodec.encode(user)) == null;
+    }
+
+    /**
+     * Commits the pending changes and closes the underlying store.
+     */
+    public void close() {
+        store.close();
+    }
+
+    /**
+     * Commits the pending changes to the underlying store.
+     * Only needed when auto commit is disabled.
+     */
+    public void commit() {
+        store.commit();
+    }
+
+    /**
+     * Deletes all users from the repository.
+     *
+     * @return The number of the deleted users.
+     */
+    @Override
+    public int deleteAll() {
+        int deleted = map.size();
+        map.clear();
+        return deleted;
+    }
+
+    /**
+     * Retrieves all users from the repository in id order.
+     *
+     * @return A list of all User objects in the repository.
+     */
+    @Override
+    public List<User> getAll() {
+        List<User> users = new ArrayList<>();
+        forEach(users::add);
+        return users;
+    }
+
+    /**
+     * Passes every user of the repository to the given action in id order,
+     * iterating over a consistent snapshot of the map without building an intermediate list.
+     *
+     * @param action The action to be performed for each user.
+     */
+    @Override
+    public void forEach(Consumer<? super User> action) {
+        Cursor<Integer, byte[]> cursor = map.cursor(null);
+        while (cursor.hasNext()) {
+            int id = cursor.next();
+            action.accept(UserCodec.decode(id, cursor.getValue()));
+        }
+    }
+
+    /**
+     * Opens the map storing the users, creating it if it doesn't exist.
+     */
+    @Override
+    protected void initTable() {
+        map = store.openMap(MAP_NAME);
+    }
+
+    /**
+     * Adds a user to the repository, or replaces the user with the same id.
+     *
+     * @param user The User object representing the user to be added or replaced.
+     */
+    @Override
+    public void upsert(User user) {
+        map.put(user.getId(), UserCodec.encode(user));
+    }
+}
@@ -0,0 +1,368 @@
+package gyurix.soitrontask.db.repository;
+
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.mapper.UserMapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * The OffHeapUserRepository class is an in-memory alternative of the UserRepository, which stores the users
+ * outside the Java heap in direct byte buffers instead of an H2 table.
+ * <p>
+ * The storage is organized in columns: a fixed-width index holding the id and the slab location of every user,
+ * a variable-length slab holding the UTF-8 encoded guid and name values, and an open addressing hash table
+ * mapping the ids to the index rows for detecting duplicate ids.
+ * Since the whole table lives in a few direct buffers, its size does not affect the garbage collector.
+ * <p>
+ * Deleting all users only resets the counters and bumps the generation of the hash table,
+ * so it runs in constant time regardless of the number of stored users.
+ * <p>
+ * The full listings are not zero-copy: every listed user is decoded into a new User with its guid and name
+ * strings, which are short-lived garbage proportional to the size of the listing. The stored users themselves
+ * never create garbage, so the GC pauses stay flat, but a PrintAll of a large table still causes young collections.
+ */
+public class OffHeapUserRepository extends Repository<User, UserMapper> {
+    /**
+     * The size of an index entry: id, slab offset, guid length and name length.
+     */
+    private static final int INDEX_ENTRY_SIZE = 16;
+
+    /**
+     * The initial number of users which fit into the storage without growing it.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * The size of a hash table slot: generation and index row.
+     */
+    private static final int SLOT_SIZE = 8;
+
+    /**
+     * The length stored for null guid and name values.
+     */
+    private static final int NULL_LENGTH = -1;
+
+    private int count;
+
+    private int generation;
+
+    private ByteBuffer index;
+
+    private byte[] scratch;
+
+    private ByteBuffer slab;
+
+    private int slabPosition;
+
+    private int slotMask;
+
+    private ByteBuffer slots;
+
+    /**
+     * Constructs an empty OffHeapUserRepository object.
+     */
+    public OffHeapUserRepository() {
+        super();
+        initTable();
+    }
+
+    /**
+     * Returns a copy of the given buffer with at least the given capacity, containing the first used bytes
+     * of the original buffer.
+     *
+     * @param buffer   The buffer to be grown.
+     * @param used     The number of used bytes in the buffer.
+     * @param required The minimum required capacity.
+     * @return The grown buffer, or the original one if it already has the required capacity.
+     * @throws IllegalStateException if the required capacity exceeds the maximal size of a buffer.
+     */
+    private static ByteBuffer grow(ByteBuffer buffer, int used, long required) {
+        if (buffer.capacity() >= required) {
+            return buffer;
+        }
+        if (required > Integer.MAX_VALUE) {
+            throw new IllegalStateException("The off-heap storage can't grow to " + required + " bytes");
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect((int) Math.min(Integer.MAX_VALUE,
+                Math.max(required, buffer.capacity() * 2L)));
+        grown.put(0, buffer, 0, used);
+        return grown;
+    }
+
+    /**
+     * Spreads the bits of the given id for the hash table.
+     *
+     * @param id The id of a user.
+     * @return The hash of the id.
+     */
+    private static int hash(int id) {
+        int hash = id * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Encodes a nullable string value to UTF-8.
+     *
+     * @param value The value to be encoded.
+     * @return The encoded value, or null if the value was null.
+     */
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Adds a user to the repository.
+     *
+     * @param user The User object representing the user to be added.
+     * @throws SQLException if a user with the same id already exists.
+     */
+    @Override
+    public synchronized void add(User user) throws SQLException {
+        if (!addIfAbsent(user)) {
+            throw new SQLException("Unique index or primary key violation: ID = " + user.getId(), "23505");
+        }
+    }
+
+    /**
+     * Adds a user to the repository, unless a user with the same id already exists.
+     *
+     * @param user The User object representing the user to be added.
+     * @return True if the user was added, false if a user with the same id already exists.
+     */
+    @Override
+    public synchronized boolean addIfAbsent(User user) {
+        int slot = findSlot(user.getId());
+        if (isSlotUsed(slot)) {
+            return false;
+        }
+        insert(slot, user);
+        return true;
+    }
+
+    /**
+     * Adds a user to the repository, or replaces the guid and the name of the user with the same id.
+     * The replaced values stay in the slab until all users are deleted.
+     *
+     * @param user The User object representing the user to be added or replaced.
+     */
+    @Override
+    public synchronized void upsert(User user) {
+        int slot = findSlot(user.getId());
+        if (isSlotUsed(slot)) {
+            write(slots.getInt(slot * SLOT_SIZE + 4), user);
+            return;
+        }
+        insert(slot, user);
+    }
+
+    /**
+     * Deletes all users from the repository in constant time.
+     * The already allocated memory is kept and reused by the upcoming users.
+     *
+     * @return The number of the deleted users.
+     */
+    @Override
+    public synchronized int deleteAll() {
+        int deleted = count;
+        count = 0;
+        slabPosition = 0;
+        if (++generation == 0) {
+            clearSlots();
+        }
+        return deleted;
+    }
+
+    /**
+     * Retrieves all users from the repository in insertion order.
+     *
+     * @return A list of all User objects in the repository.
+     */
+    @Override
+    public synchronized List<User> getAll() {
+        List<User> users = new ArrayList<>(count);
+        for (int row = 0; row < count; ++row) {
+            users.add(read(index, slab, row));
+        }
+        return users;
+    }
+
+    /**
+     * Passes every user of the repository to the given action in insertion order, without building
+     * an intermediate list of the users.
+     * <p>
+     * The used parts of the index and the slab are copied in bulk while the repository is locked, then the users are
+     * decoded from the copy one by one, so the action can block, e.g. on console output, without stalling the writers.
+     * The copy is two arrays regardless of the number of users, but each user is still decoded into new objects.
+     *
+     * @param action The action to be performed for each user.
+     */
+    @Override
+    public void forEach(Consumer<? super User> action) {
+        int rows;
+        ByteBuffer indexCopy;
+        ByteBuffer slabCopy;
+        synchronized (this) {
+            rows = count;
+            indexCopy = ByteBuffer.allocate(rows * INDEX_ENTRY_SIZE).put(0, index, 0, rows * INDEX_ENTRY_SIZE);
+            slabCopy = ByteBuffer.allocate(slabPosition).put(0, slab, 0, slabPosition);
+        }
+        for (int row = 0; row < rows; ++row) {
+            action.accept(read(indexCopy, slabCopy, row));
+        }
+    }
+
+    /**
+     * Allocates the initial off-heap storage of the repository.
+     */
+    @Override
+    protected synchronized void initTable() {
+        index = ByteBuffer.allocateDirect(INITIAL_CAPACITY * INDEX_ENTRY_SIZE);
+        slab = ByteBuffer.allocateDirect(INITIAL_CAPACITY * 32);
+        slots = ByteBuffer.allocateDirect(INITIAL_CAPACITY * 2 * SLOT_SIZE);
+        slotMask = INITIAL_CAPACITY * 2 - 1;
+        scratch = new byte[64];
+        generation = 1;
+    }
+
+    /**
+     * Marks every slot of the hash table as unused, needed only when the generation counter overflows.
+     */
+    private void clearSlots() {
+        for (int pos = 0; pos < slots.capacity(); pos += SLOT_SIZE) {
+            slots.putInt(pos, 0);
+        }
+        generation = 1;
+    }
+
+    /**
+     * Finds the hash table slot of the given id using linear probing.
+     *
+     * @param id The id of the user.
+     * @return The slot containing the given id, or the first unused slot if the id is not present.
+     */
+    private int findSlot(int id) {
+        int slot = hash(id) & slotMask;
+        while (isSlotUsed(slot) && index.getInt(slots.getInt(slot * SLOT_SIZE + 4) * INDEX_ENTRY_SIZE) != id) {
+            slot = (slot + 1) & slotMask;
+        }
+        return slot;
+    }
+
+    /**
+     * Inserts a user into a new index row and maps its id to the row in the given free slot.
+     *
+     * @param slot The free slot of the id of the user in the hash table.
+     * @param user The user to be inserted.
+     */
+    private void insert(int slot, User user) {
+        index = grow(index, count * INDEX_ENTRY_SIZE, (count + 1L) * INDEX_ENTRY_SIZE);
+        write(count, user);
+        slots.putInt(slot * SLOT_SIZE, generation);
+        slots.putInt(slot * SLOT_SIZE + 4, count);
+        ++count;
+        if (count * 2 > slotMask + 1) {
+            rehash((slotMask + 1) * 2);
+        }
+    }
+
+    /**
+     * Checks if the given hash table slot belongs to the current generation.
+     *
+     * @param slot The slot to be checked.
+     * @return True if the slot is used, false otherwise.
+     */
+    private boolean isSlotUsed(int slot) {
+        return slots.getInt(slot * SLOT_SIZE) == generation;
+    }
+
+    /**
+     * Decodes the user stored in the given index row of the given index and slab,
+     * either the storage of the repository or a copy of it.
+     *
+     * @param index The index buffer.
+     * @param slab  The slab buffer.
+     * @param row   The index row of the user.
+     * @return The decoded User object.
+     */
+    private User read(ByteBuffer index, ByteBuffer slab, int row) {
+        int entry = row * INDEX_ENTRY_SIZE;
+        int offset = index.getInt(entry + 4);
+        int guidLength = index.getInt(entry + 8);
+        int nameLength = index.getInt(entry + 12);
+        String guid = readString(slab, offset, guidLength);
+        String name = readString(slab, offset + Math.max(guidLength, 0), nameLength);
+        return new User(index.getInt(entry), guid, name);
+    }
+
+    /**
+     * Decodes an UTF-8 string from a slab. The strings of a heap copy are decoded from its array directly,
+     * the strings of the off-heap slab are copied into the scratch array first, which needs the lock.
+     *
+     * @param slab   The slab buffer.
+     * @param offset The offset of the string in the slab.
+     * @param length The length of the encoded string, or {@link #NULL_LENGTH} for null values.
+     * @return The decoded string.
+     */
+    private String readString(ByteBuffer slab, int offset, int length) {
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (slab.hasArray()) {
+            return new String(slab.array(), slab.arrayOffset() + offset, length, StandardCharsets.UTF_8);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        slab.get(offset, scratch, 0, length);
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Rebuilds the hash table with the given number of slots from the current index rows.
+     *
+     * @param slotCount The new number of slots, must be a power of two.
+     */
+    private void rehash(int slotCount) {
+        slots = ByteBuffer.allocateDirect(slotCount * SLOT_SIZE);
+        slotMask = slotCount - 1;
+        generation = 1;
+        for (int row = 0; row < count; ++row) {
+            int slot = findSlot(index.getInt(row * INDEX_ENTRY_SIZE));
+            slots.putInt(slot * SLOT_SIZE, generation);
+            slots.putInt(slot * SLOT_SIZE + 4, row);
+        }
+    }
+
+    /**
+     * Writes a user into the given index row, appending its guid and name to the slab.
+     *
+     * @param row  The index row.
+     * @param user The user to be written.
+     */
+    private void write(int row, User user) {
+        byte[] guid = encode(user.getGuid());
+        byte[] name = encode(user.getName());
+        int guidLength = guid == null ? 0 : guid.length;
+        int nameLength = name == null ? 0 : name.length;
+
+        slab = grow(slab, slabPosition, (long) slabPosition + guidLength + nameLength);
+
+        int entry = row * INDEX_ENTRY_SIZE;
+        index.putInt(entry, user.getId());
+        index.putInt(entry + 4, slabPosition);
+        index.putInt(entry + 8, guid == null ? NULL_LENGTH : guidLength);
+        index.putInt(entry + 12, name == null ? NULL_LENGTH : nameLength);
+        if (guid != null) {
+            slab.put(slabPosition, guid);
+        }
+        if (name != null) {
+            slab.put(slabPosition + guidLength, name);
+        }
+        slabPosition += guidLength + nameLength;
+    }
+}
@@ -6,6 +6,7 @@ import lombok.SneakyThrows;
 
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * The Repository class serves as a base class for specific entity repositories.
@@ -18,6 +19,11 @@ import java.util.List;
 public abstract class Repository<T, M extends DTOMapper<T>> {
     protected final Database database;
 
+    /**
+     * The mapper of the entity, bound at construction so the queries don't need to look it up.
+     */
+    protected final M mapper;
+
     /**
      * Constructs a Repository object with the specified database, entity type, and mapper.
      *
@@ -29,10 +35,21 @@ public abstract class Repository<T, M extends DTOMapper<T>> {
     @SneakyThrows
     protected Repository(Database database, Class<T> entityType, M mapper) {
         this.database = database;
+        this.mapper = mapper;
         database.registerMapper(entityType, mapper);
         initTable();
     }
 
+    /**
+     * Constructs a Repository object which is not backed by a SQL database.
+     * Implementations using this constructor manage their own storage and must call {@link #initTable()}
+     * once their storage is configured.
+     */
+    protected Repository() {
+        this.database = null;
+        this.mapper = null;
+    }
+
     /**
      * Adds an entity to the repository.
      *
@@ -41,12 +58,23 @@ public abstract class Repository<T, M extends DTOMapper<T>> {
      */
     public abstract void add(T entity) throws SQLException;
 
+    /**
+     * Adds an entity to the repository, unless an entity with the same key already exists.
+     * Unlike {@link #add(Object)}, an existing key is not treated as an error, so no exception is thrown for it.
+     *
+     * @param entity The entity to be added.
+     * @return True if the entity was added, false if an entity with the same key already exists.
+     * @throws SQLException if a database access error occurs.
+     */
+    public abstract boolean addIfAbsent(T entity) throws SQLException;
+
     /**
      * Deletes all entities from the repository.
      *
+     * @return The number of the deleted entities.
      * @throws SQLException if a database access error occurs.
      */
-    public abstract void deleteAll() throws SQLException;
+    public abstract int deleteAll() throws SQLException;
 
     /**
      * Retrieves all entities from the repository.
@@ -56,6 +84,20 @@ public abstract class Repository<T, M extends DTOMapper<T>> {
      */
     public abstract List<T> getAll() throws SQLException;
 
+    /**
+     * Passes every entity of the repository to the given action.
+     * The default implementation iterates over the result of {@link #getAll()},
+     * implementations may override it to avoid building the intermediate list.
+     *
+     * @param action The action to be performed for each entity.
+     * @throws SQLException if a database access error occurs.
+     */
+    public void forEach(Consumer<? super T> action) throws SQLException {
+        for (T entity : getAll()) {
+            action.accept(entity);
+        }
+    }
+
     /**
      * Initializes the database table for the entity.
      * This method is called during repository initialization.
@@ -63,4 +105,12 @@ public abstract class Repository<T, M extends DTOMapper<T>> {
      * @throws SQLException if a database access error occurs.
      */
     protected abstract void initTable() throws SQLException;
+
+    /**
+     * Adds an entity to the repository, or replaces the entity with the same key.
+     *
+     * @param entity The entity to be added or replaced.
+     * @throws SQLException if a database access error occurs.
+     */
+    public abstract void upsert(T entity) throws SQLException;
 }
@@ -0,0 +1,447 @@
+package gyurix.soitrontask.db.repository;
+
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.mapper.UserMapper;
+import gyurix.soitrontask.shard.ShardProtocol;
+import lombok.SneakyThrows;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The ShardedUserRepository class is the repository of the router in the sharded deployment, distributing the users
+ * between ShardServer processes, each of them owning a shard of the user id space with its own repository.
+ * <p>
+ * A user belongs to the shard selected by its id modulo the number of the shards. The single user operations are
+ * forwarded to the owning shard, while DeleteAll and PrintAll are fanned out to all the shards in parallel,
+ * and the users listed by the shards are merged in id order.
+ * <p>
+ * Each shard is reached through a pool of local socket connections, so the concurrent consumers of the router
+ * can keep several requests in flight on every shard. Unlike the SQL based repositories, this repository
+ * does not need to lock itself, as each request uses its own connection. The number of the connections per shard
+ * is capped, and the connects and the reads time out, so an unresponsive shard server fails the requests
+ * instead of blocking the consumers forever.
+ */
+public class ShardedUserRepository extends Repository<User, UserMapper> {
+    /**
+     * The writer of the requests without arguments.
+     */
+    private static final Writer NO_ARGUMENTS = out -> {
+    };
+
+    /**
+     * The default connection settings, 16 connections per shard, 5 s connect timeout and 30 s read timeout.
+     */
+    public static final Settings DEFAULT_SETTINGS = new Settings(16, 5000, 30000);
+
+    private final ExecutorService fanOut;
+
+    private final List<Shard> shards = new ArrayList<>();
+
+    /**
+     * Constructs a ShardedUserRepository object using the specified shard servers with the default connection settings.
+     *
+     * @param addresses The addresses of the shard servers. The order of the addresses defines the shards of the ids,
+     *                  so it must be the same for every router using the same shard servers.
+     * @throws SQLException if a shard server can't be reached.
+     */
+    public ShardedUserRepository(List<InetSocketAddress> addresses) {
+        this(addresses, DEFAULT_SETTINGS);
+    }
+
+    /**
+     * Constructs a ShardedUserRepository object using the specified shard servers and connection settings.
+     *
+     * @param addresses The addresses of the shard servers. The order of the addresses defines the shards of the ids,
+     *                  so it must be the same for every router using the same shard servers.
+     * @param settings  The connection settings of the shards.
+     * @throws SQLException if a shard server can't be reached.
+     */
+    @SneakyThrows
+    public ShardedUserRepository(List<InetSocketAddress> addresses, Settings settings) {
+        super();
+        for (InetSocketAddress address : addresses) {
+            shards.add(new Shard(address, settings));
+        }
+        fanOut = Executors.newFixedThreadPool(addresses.size(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-fan-out");
+            thread.setDaemon(true);
+            return thread;
+        });
+        initTable();
+    }
+
+    /**
+     * Parses the addresses of the shard servers.
+     *
+     * @param shards The comma separated list of the addresses in host:port format, or only the ports
+     *               of the shard servers running on the same host.
+     * @return The addresses of the shard servers.
+     * @throws IllegalArgumentException if no addresses are given, or an address is invalid.
+     */
+    public static List<InetSocketAddress> parseAddresses(String shards) {
+        if (shards == null || shards.isBlank()) {
+            throw new IllegalArgumentException("The sharded storage requires the addresses of the shard servers, " +
+                    "set them by the --shards option");
+        }
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (String shard : shards.split(",")) {
+            String[] parts = shard.trim().split(":");
+            addresses.add(parts.length == 1 ? new InetSocketAddress("127.0.0.1", Integer.parseInt(parts[0])) :
+                    new InetSocketAddress(parts[0], Integer.parseInt(parts[1])));
+        }
+        return addresses;
+    }
+
+    /**
+     * Adds a user to its shard.
+     *
+     * @param user The User object representing the user to be added.
+     * @throws SQLException if a user with the same id already exists, or the shard can't be reached.
+     */
+    @Override
+    public void add(User user) throws SQLException {
+        getShard(user.getId()).call(ShardProtocol.ADD, out -> ShardProtocol.writeUser(out, user), in -> null);
+    }
+
+    /**
+     * Adds a user to its shard, unless a user with the same id already exists.
+     *
+     * @param user The User object representing the user to be added.
+     * @return True if the user was added, false if a user with the same id already exists.
+     * @throws SQLException if the shard can't be reached or fails.
+     */
+    @Override
+    public boolean addIfAbsent(User user) throws SQLException {
+        return getShard(user.getId()).call(ShardProtocol.ADD_IF_ABSENT, out -> ShardProtocol.writeUser(out, user),
+                DataInputStream::readBoolean);
+    }
+
+    /**
+     * Closes the connections to the shard servers and stops the fan-out threads.
+     */
+    public void close() {
+        fanOut.shutdownNow();
+        shards.forEach(Shard::close);
+    }
+
+    /**
+     * Deletes all users from all the shards in parallel.
+     *
+     * @return The number of the deleted users.
+     * @throws SQLException if a shard can't be reached or fails.
+     */
+    @Override
+    public int deleteAll() throws SQLException {
+        int count = 0;
+        for (int shardCount : callAll(ShardProtocol.DELETE_ALL, DataInputStream::readInt)) {
+            count += shardCount;
+        }
+        return count;
+    }
+
+    /**
+     * Retrieves all users from all the shards in parallel, and merges them in id order.
+     *
+     * @return A list of all User objects in id order.
+     * @throws SQLException if a shard can't be reached or fails.
+     */
+    @Override
+    public List<User> getAll() throws SQLException {
+        List<List<User>> lists = callAll(ShardProtocol.GET_ALL, in -> {
+            int size = in.readInt();
+            List<User> users = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                users.add(ShardProtocol.readUser(in));
+            }
+            return users;
+        });
+        // The shards list their users in id order, so a k-way merge is enough
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Comparator.comparingInt(
+                (int[] head) -> lists.get(head[0]).get(head[1]).getId()));
+        int total = 0;
+        for (int i = 0; i < lists.size(); ++i) {
+            total += lists.get(i).size();
+            if (!lists.get(i).isEmpty()) {
+                heads.add(new int[]{i, 0});
+            }
+        }
+        List<User> users = new ArrayList<>(total);
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<User> list = lists.get(head[0]);
+            users.add(list.get(head[1]));
+            if (++head[1] < list.size()) {
+                heads.add(head);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Gets the number of the shards.
+     *
+     * @return The number of the shards.
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Checks that all the shard servers are reachable.
+     * This method is called during repository initialization.
+     *
+     * @throws SQLException if a shard can't be reached.
+     */
+    @Override
+    protected void initTable() throws SQLException {
+        for (Shard shard : shards) {
+            shard.release(shard.acquire());
+        }
+    }
+
+    /**
+     * Adds a user to its shard, or replaces the user with the same id.
+     *
+     * @param user The User object representing the user to be added or replaced.
+     * @throws SQLException if the shard can't be reached or fails.
+     */
+    @Override
+    public void upsert(User user) throws SQLException {
+        getShard(user.getId()).call(ShardProtocol.UPSERT, out -> ShardProtocol.writeUser(out, user), in -> null);
+    }
+
+    /**
+     * Sends a request without arguments to all the shards in parallel.
+     *
+     * @param opcode The opcode of the request.
+     * @param reader The reader of the result of the request.
+     * @param <T>    The type of the result.
+     * @return The results of the shards, in the order of the shards.
+     * @throws SQLException if a shard can't be reached or fails.
+     */
+    private <T> List<T> callAll(byte opcode, Reader<T> reader) throws SQLException {
+        List<Future<T>> futures = new ArrayList<>(shards.size());
+        for (Shard shard : shards) {
+            futures.add(fanOut.submit(() -> shard.call(opcode, NO_ARGUMENTS, reader)));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the shards", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof SQLException sqlException ? sqlException :
+                    new SQLException("Shard request failed", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Gets the shard owning the given id.
+     *
+     * @param id The id of a user.
+     * @return The shard of the user.
+     */
+    private Shard getShard(int id) {
+        return shards.get(Math.floorMod(id, shards.size()));
+    }
+
+    /**
+     * The Reader interface reads the result of a request from a shard connection.
+     *
+     * @param <T> The type of the result.
+     */
+    @FunctionalInterface
+    private interface Reader<T> {
+        /**
+         * Reads the result of a request.
+         *
+         * @param in The input of the connection.
+         * @return The result of the request.
+         * @throws IOException if an I/O error occurs.
+         */
+        T read(DataInputStream in) throws IOException;
+    }
+
+    /**
+     * The Writer interface writes the arguments of a request to a shard connection.
+     */
+    @FunctionalInterface
+    private interface Writer {
+        /**
+         * Writes the arguments of a request.
+         *
+         * @param out The output of the connection.
+         * @throws IOException if an I/O error occurs.
+         */
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * The Connection record is an open connection to a shard server.
+     *
+     * @param socket The socket of the connection.
+     * @param in     The buffered input of the connection.
+     * @param out    The buffered output of the connection.
+     */
+    private record Connection(Socket socket, DataInputStream in, DataOutputStream out) {
+    }
+
+    /**
+     * The Settings record holds the connection settings of the shards.
+     *
+     * @param maxConnections      The maximum number of the connections per shard, the requests above it wait
+     *                            for a free connection up to the connect timeout.
+     * @param connectTimeoutMillis The time in milliseconds to wait for connecting to a shard server,
+     *                             or for a free connection.
+     * @param readTimeoutMillis    The time in milliseconds to wait for the response of a shard server.
+     */
+    public record Settings(int maxConnections, int connectTimeoutMillis, int readTimeoutMillis) {
+    }
+
+    /**
+     * The Shard class is the client of a shard server, holding a bounded pool of its connections.
+     */
+    private static class Shard {
+        private final InetSocketAddress address;
+
+        private final ConcurrentLinkedQueue<Connection> idle = new ConcurrentLinkedQueue<>();
+
+        /**
+         * The permits of the connections, one is held by each open connection in use.
+         */
+        private final Semaphore permits;
+
+        private final Settings settings;
+
+        /**
+         * Constructs a new Shard client.
+         *
+         * @param address  The address of the shard server.
+         * @param settings The connection settings.
+         */
+        Shard(InetSocketAddress address, Settings settings) {
+            this.address = address;
+            this.settings = settings;
+            permits = new Semaphore(settings.maxConnections());
+        }
+
+        /**
+         * Takes an idle connection from the pool, or opens a new one if there is no idle connection.
+         * If all the connections are in use, it waits for a free one up to the connect timeout.
+         *
+         * @return The connection.
+         * @throws SQLException if the shard server can't be reached, or no connection becomes free in time.
+         */
+        Connection acquire() throws SQLException {
+            try {
+                if (!permits.tryAcquire(settings.connectTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                    throw new SQLException("Timed out waiting for a free connection to shard " + address);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for a connection to shard " + address, e);
+            }
+            Connection connection = idle.poll();
+            if (connection != null) {
+                return connection;
+            }
+            Socket socket = new Socket();
+            try {
+                socket.connect(address, settings.connectTimeoutMillis());
+                socket.setSoTimeout(settings.readTimeoutMillis());
+                socket.setTcpNoDelay(true);
+                return new Connection(socket, new DataInputStream(new BufferedInputStream(socket.getInputStream())),
+                        new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+            } catch (IOException e) {
+                closeQuietly(socket);
+                permits.release();
+                throw new SQLException("Failed to connect to shard " + address, e);
+            }
+        }
+
+        /**
+         * Sends a request to the shard server and reads its result.
+         *
+         * @param opcode The opcode of the request.
+         * @param writer The writer of the arguments of the request.
+         * @param reader The reader of the result of the request.
+         * @param <T>    The type of the result.
+         * @return The result of the request.
+         * @throws SQLException if the shard server can't be reached, or it reports an error.
+         */
+        <T> T call(byte opcode, Writer writer, Reader<T> reader) throws SQLException {
+            Connection connection = acquire();
+            try {
+                connection.out().writeByte(opcode);
+                writer.write(connection.out());
+                connection.out().flush();
+                if (connection.in().readByte() == ShardProtocol.STATUS_ERROR) {
+                    String message = connection.in().readUTF();
+                    release(connection);
+                    throw new SQLException("Shard " + address + " failed: " + message);
+                }
+                T result = reader.read(connection.in());
+                release(connection);
+                return result;
+            } catch (IOException e) {
+                closeQuietly(connection.socket());
+                permits.release();
+                throw new SQLException("Request to shard " + address + " failed", e);
+            }
+        }
+
+        /**
+         * Closes all the idle connections.
+         */
+        void close() {
+            Connection connection;
+            while ((connection = idle.poll()) != null) {
+                closeQuietly(connection.socket());
+            }
+        }
+
+        /**
+         * Closes a socket, ignoring the errors.
+         *
+         * @param socket The socket to be closed.
+         */
+        private void closeQuietly(Socket socket) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+
+        /**
+         * Puts a connection back into the pool of the idle connections, freeing its permit.
+         *
+         * @param connection The connection.
+         */
+        void release(Connection connection) {
+            idle.add(connection);
+            permits.release();
+        }
+    }
+}
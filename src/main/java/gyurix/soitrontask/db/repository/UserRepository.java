@@ -1,26 +1,129 @@
 package gyurix.soitrontask.db.repository;
 
 import gyurix.soitrontask.db.Database;
+import gyurix.soitrontask.db.Query;
+import gyurix.soitrontask.db.Update;
 import gyurix.soitrontask.db.entity.User;
 import gyurix.soitrontask.db.mapper.UserMapper;
+import lombok.SneakyThrows;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The UserRepository class is a specific repository for managing User entities.
  * It extends the base Repository class and provides methods for adding users, deleting all users,
  * retrieving all users, and initializing the User table in the database.
+ * Its statements are precompiled once at construction.
+ * The conditional and the replacing inserts use MERGE statements, so existing ids don't raise exceptions in H2.
+ * <p>
+ * Optionally the full listings can use a parallel scan: the id space between the smallest and the largest id is split
+ * into ranges of equal widths, which are read and mapped concurrently on separate connections, then concatenated
+ * in id order. This way the listing of large tables scales with the number of the cores instead of being limited to one.
+ * The smallest and the largest ids are looked up in the primary key index, so the boundaries cost no extra pass over
+ * the table. The ranges only hold equal numbers of users if the ids are spread evenly, skewed ids, e.g. a few outliers
+ * far from the rest, leave most of the users in a single range, and the listing falls back to the sequential speed.
+ * <p>
+ * The ranges are read by separate statements on separate connections, so the parallel listing is not a consistent
+ * snapshot: a transaction committed while the ranges are read may be visible in some of the ranges only,
+ * and the users added or removed after the boundaries are read only affect the ranges read later.
  */
 public class UserRepository extends Repository<User, UserMapper> {
+    private final Update<Void> deleteAllUpdate;
+
+    private final Update<User> insertIfAbsentUpdate;
+
+    private final Update<User> insertUpdate;
+
+    private final Update<User> mergeUpdate;
+
+    private final Query<User> selectAllQuery;
+
+    /**
+     * The query of the smallest and the largest ids, having a null result for the empty table,
+     * or null if the parallel scan is disabled.
+     */
+    private final Query<int[]> boundaryQuery;
+
+    /**
+     * The range queries of the parallel scan, each prepared on its own connection.
+     */
+    private final List<Query<User>> rangeQueries = new ArrayList<>();
+
+    /**
+     * The databases of the connections of the parallel scan.
+     */
+    private final List<Database> scanDatabases = new ArrayList<>();
+
+    /**
+     * The threads of the parallel scan, or null if the parallel scan is disabled.
+     */
+    private final ExecutorService scanExecutor;
+
     /**
      * Constructs a UserRepository object with the specified database.
-     * It sets up the User repository by providing the User class and a UserMapper instance to the base Repository class.
+     * It sets up the User repository by providing the User class and a UserMapper instance to the base Repository class,
+     * then precompiles the statements used by the repository.
      *
      * @param database The Database object representing the database connection.
+     * @throws SQLException if a database access error occurs.
      */
     public UserRepository(Database database) {
+        this(database, 1);
+    }
+
+    /**
+     * Constructs a UserRepository object with the specified database, listing the users by a parallel scan
+     * if more than one scan partition is requested.
+     * The parallel scan opens a further connection to the database for each partition, so the database URL must
+     * refer to a database shared between the connections, e.g. a named in-memory database.
+     *
+     * @param database       The Database object representing the database connection.
+     * @param scanPartitions The number of the id ranges read concurrently by the full listings,
+     *                       1 for reading the table on the connection of the database.
+     * @throws SQLException             if a database access error occurs.
+     * @throws IllegalArgumentException if the parallel scan is requested for a private in-memory database.
+     */
+    @SneakyThrows
+    public UserRepository(Database database, int scanPartitions) {
         super(database, User.class, new UserMapper());
+        insertUpdate = database.prepareUpdate("INSERT INTO SUSERS (ID, GUID, NAME) VALUES (?, ?, ?)", mapper);
+        insertIfAbsentUpdate = database.prepareUpdate("MERGE INTO SUSERS T " +
+                "USING (VALUES (CAST(? AS INT), CAST(? AS VARCHAR(50)), CAST(? AS VARCHAR(50)))) S (ID, GUID, NAME) " +
+                "ON T.ID = S.ID WHEN NOT MATCHED THEN INSERT (ID, GUID, NAME) VALUES (S.ID, S.GUID, S.NAME)", mapper);
+        mergeUpdate = database.prepareUpdate("MERGE INTO SUSERS (ID, GUID, NAME) KEY (ID) VALUES (?, ?, ?)", mapper);
+        deleteAllUpdate = database.prepareUpdate("DELETE FROM SUSERS");
+        selectAllQuery = database.prepareQuery("SELECT * FROM SUSERS", mapper);
+        if (scanPartitions <= 1) {
+            boundaryQuery = null;
+            scanExecutor = null;
+            return;
+        }
+        if (database.getUrl().matches("jdbc:h2:mem:(;.*)?")) {
+            throw new IllegalArgumentException("The parallel scan needs a named in-memory database");
+        }
+        boundaryQuery = database.prepareQuery("SELECT MIN(ID), MAX(ID) FROM SUSERS", resultSet -> {
+            int min = resultSet.getInt(1);
+            return resultSet.wasNull() ? null : new int[]{min, resultSet.getInt(2)};
+        });
+        for (int i = 0; i < scanPartitions; ++i) {
+            Database scanDatabase = new Database(database.getUrl());
+            scanDatabases.add(scanDatabase);
+            rangeQueries.add(scanDatabase.prepareQuery("SELECT * FROM SUSERS WHERE ID BETWEEN ? AND ? ORDER BY ID",
+                    mapper));
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        scanExecutor = Executors.newFixedThreadPool(scanPartitions, runnable -> {
+            Thread thread = new Thread(runnable, "scan-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     /**
@@ -30,26 +133,101 @@ public class UserRepository extends Repository<User, UserMapper> {
      * @throws SQLException if a database access error occurs.
      */
     public synchronized void add(User user) throws SQLException {
-        database.executeRawQuery("INSERT INTO SUSERS (ID, GUID, NAME) VALUES (?, ?, ?)", null, user);
+        insertUpdate.execute(user);
+    }
+
+    /**
+     * Adds a user to the repository, unless a user with the same id already exists.
+     *
+     * @param user The User object representing the user to be added.
+     * @return True if the user was added, false if a user with the same id already exists.
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized boolean addIfAbsent(User user) throws SQLException {
+        return insertIfAbsentUpdate.execute(user) == 1;
+    }
+
+    /**
+     * Closes the connections and stops the threads of the parallel scan.
+     * The connection of the database passed to the constructor is not closed.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized void close() throws SQLException {
+        if (scanExecutor != null) {
+            scanExecutor.shutdownNow();
+        }
+        for (Database scanDatabase : scanDatabases) {
+            scanDatabase.closeConnection();
+        }
     }
 
     /**
      * Deletes all users from the repository.
      *
+     * @return The number of the deleted users.
      * @throws SQLException if a database access error occurs.
      */
-    public synchronized void deleteAll() throws SQLException {
-        database.executeRawQuery("DELETE FROM SUSERS", null);
+    public synchronized int deleteAll() throws SQLException {
+        return deleteAllUpdate.execute();
     }
 
     /**
      * Retrieves all users from the repository.
+     * With the parallel scan, the users are listed in id order, but not as a consistent snapshot.
      *
      * @return A list of all User objects in the repository.
      * @throws SQLException if a database access error occurs.
      */
     public synchronized List<User> getAll() throws SQLException {
-        return database.executeRawQuery("SELECT * FROM SUSERS", User.class);
+        if (scanExecutor == null) {
+            return selectAllQuery.list();
+        }
+        List<int[]> ranges = getScanRanges();
+        List<Future<List<User>>> futures = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); ++i) {
+            Query<User> rangeQuery = rangeQueries.get(i);
+            int[] range = ranges.get(i);
+            futures.add(scanExecutor.submit(() -> rangeQuery.list(range[0], range[1])));
+        }
+        List<User> users = new ArrayList<>();
+        try {
+            for (Future<List<User>> future : futures) {
+                users.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while scanning the users", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof SQLException sqlException ? sqlException :
+                    new SQLException("Parallel scan failed", e.getCause());
+        }
+        return users;
+    }
+
+    /**
+     * Gets the id ranges of the parallel scan, splitting the ids between the current smallest and largest ids
+     * into ranges of equal widths.
+     * The first range starts at the smallest int and the last one ends at the largest int,
+     * so the users added after the boundaries are read are listed too.
+     *
+     * @return The inclusive id ranges in ascending order, at most one per scan partition,
+     * or an empty list if the table is empty.
+     * @throws SQLException if a database access error occurs.
+     */
+    synchronized List<int[]> getScanRanges() throws SQLException {
+        int[] bounds = boundaryQuery.list().get(0);
+        if (bounds == null) {
+            return List.of();
+        }
+        long span = (long) bounds[1] - bounds[0] + 1;
+        int count = (int) Math.min(rangeQueries.size(), span);
+        List<int[]> ranges = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            ranges.add(new int[]{i == 0 ? Integer.MIN_VALUE : (int) (bounds[0] + span * i / count),
+                    i + 1 < count ? (int) (bounds[0] + span * (i + 1) / count - 1) : Integer.MAX_VALUE});
+        }
+        return ranges;
     }
 
     /**
@@ -59,10 +237,21 @@ public class UserRepository extends Repository<User, UserMapper> {
      * @throws SQLException if a database access error occurs.
      */
     protected synchronized void initTable() throws SQLException {
-        database.executeRawQuery("CREATE TABLE IF NOT EXISTS SUSERS (" +
+        try (Update<Void> createTable = database.prepareUpdate("CREATE TABLE IF NOT EXISTS SUSERS (" +
                 "ID INT PRIMARY KEY, " +
                 "GUID VARCHAR(50)," +
-                "NAME VARCHAR(50))", null);
+                "NAME VARCHAR(50))")) {
+            createTable.execute();
+        }
+    }
 
+    /**
+     * Adds a user to the repository, or replaces the user with the same id.
+     *
+     * @param user The User object representing the user to be added or replaced.
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized void upsert(User user) throws SQLException {
+        mergeUpdate.execute(user);
     }
 }
@@ -0,0 +1,83 @@
+package gyurix.soitrontask.load;
+
+import gyurix.soitrontask.command.CommandType;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * The CommandMix record holds the relative weights of the command types generated by the LoadGenerator.
+ *
+ * @param add       The weight of the Add commands.
+ * @param deleteAll The weight of the DeleteAll commands.
+ * @param help      The weight of the Help commands.
+ * @param printAll  The weight of the PrintAll commands.
+ */
+public record CommandMix(int add, int deleteAll, int help, int printAll) {
+    /**
+     * Parses a command mix in "type=weight,..." format, e.g. "add=90,printall=5,deleteall=1,help=4".
+     * The type names are case-insensitive, the missing types get 0 weight.
+     *
+     * @param spec The command mix specification.
+     * @return The parsed command mix.
+     * @throws IllegalArgumentException if a type is unknown or the sum of the weights is not positive.
+     */
+    public static CommandMix parse(String spec) {
+        Map<CommandType, Integer> weights = new EnumMap<>(CommandType.class);
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split("=", 2);
+            CommandType type = CommandType.of(parts[0].trim());
+            if (type == CommandType.UNKNOWN || parts.length != 2) {
+                throw new IllegalArgumentException("Invalid command mix entry " + entry);
+            }
+            weights.put(type, Integer.parseInt(parts[1].trim()));
+        }
+        CommandMix mix = new CommandMix(weights.getOrDefault(CommandType.ADD, 0),
+                weights.getOrDefault(CommandType.DELETE_ALL, 0),
+                weights.getOrDefault(CommandType.HELP, 0),
+                weights.getOrDefault(CommandType.PRINT_ALL, 0));
+        if (mix.total() <= 0) {
+            throw new IllegalArgumentException("The command mix " + spec + " has no positive weights");
+        }
+        return mix;
+    }
+
+    /**
+     * Generates the next command line.
+     *
+     * @param random The random number generator.
+     * @param keys   The distribution of the user ids of the Add commands.
+     * @return The generated command line.
+     */
+    public String next(Random random, KeyDistribution keys) {
+        int value = random.nextInt(total());
+        if ((value -= add) < 0) {
+            int id = keys.next(random);
+            return "Add (" + id + ", guid-" + id + ", name-" + id + ")";
+        }
+        if ((value -= deleteAll) < 0) {
+            return "DeleteAll";
+        }
+        return value - help < 0 ? "Help" : "PrintAll";
+    }
+
+    /**
+     * Returns the command mix in the format accepted by {@link #parse(String)}.
+     *
+     * @return The command mix specification.
+     */
+    @Override
+    public String toString() {
+        return "add=" + add + ",deleteall=" + deleteAll + ",help=" + help + ",printall=" + printAll;
+    }
+
+    /**
+     * Gets the sum of the weights.
+     *
+     * @return The sum of the weights.
+     */
+    private int total() {
+        return add + deleteAll + help + printAll;
+    }
+}
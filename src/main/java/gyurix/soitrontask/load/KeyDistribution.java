@@ -0,0 +1,81 @@
+package gyurix.soitrontask.load;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The KeyDistribution class generates the user ids of the commands created by the LoadGenerator,
+ * either uniformly, or by a Zipf distribution, where a few hot ids are used much more often than the others.
+ * The ids are in the range of 1 to the key space.
+ */
+public final class KeyDistribution {
+    /**
+     * The cumulative probabilities of the ids for the Zipf distribution, or null for the uniform distribution.
+     */
+    private final double[] cumulative;
+
+    @Getter
+    private final int keySpace;
+
+    @Getter
+    private final String name;
+
+    /**
+     * Constructs a new KeyDistribution.
+     *
+     * @param name       The name of the distribution.
+     * @param keySpace   The number of the distinct ids.
+     * @param cumulative The cumulative probabilities of the ids, or null for the uniform distribution.
+     */
+    private KeyDistribution(String name, int keySpace, double[] cumulative) {
+        this.name = name;
+        this.keySpace = keySpace;
+        this.cumulative = cumulative;
+    }
+
+    /**
+     * Creates a uniform distribution of the ids.
+     *
+     * @param keySpace The number of the distinct ids.
+     * @return The created distribution.
+     */
+    public static KeyDistribution uniform(int keySpace) {
+        return new KeyDistribution("uniform", keySpace, null);
+    }
+
+    /**
+     * Creates a Zipf distribution of the ids, where the probability of the k-th id is proportional to 1 / k^exponent.
+     *
+     * @param keySpace The number of the distinct ids.
+     * @param exponent The skew of the distribution, 0 is uniform, higher values make the low ids hotter.
+     * @return The created distribution.
+     */
+    public static KeyDistribution zipf(int keySpace, double exponent) {
+        double[] cumulative = new double[keySpace];
+        double sum = 0;
+        for (int i = 0; i < keySpace; ++i) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < keySpace; ++i) {
+            cumulative[i] /= sum;
+        }
+        return new KeyDistribution("zipf(" + exponent + ")", keySpace, cumulative);
+    }
+
+    /**
+     * Generates the next id.
+     *
+     * @param random The random number generator.
+     * @return The generated id, between 1 and the key space.
+     */
+    public int next(Random random) {
+        if (cumulative == null) {
+            return random.nextInt(keySpace) + 1;
+        }
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        return (index < 0 ? -index - 1 : index) + 1;
+    }
+}
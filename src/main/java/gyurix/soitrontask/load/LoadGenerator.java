@@ -0,0 +1,270 @@
+package gyurix.soitrontask.load;
+
+import gyurix.soitrontask.LogSink;
+import gyurix.soitrontask.SoitronTaskMain;
+import gyurix.soitrontask.consumer.CommandExecutor;
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.mapper.UserMapper;
+import gyurix.soitrontask.db.repository.Repository;
+import lombok.SneakyThrows;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The LoadGenerator class is a load generation harness, which submits a deterministic sequence of commands
+ * to a pool of CommandExecutors and measures the throughput, the latency percentiles and the memory usage.
+ * <p>
+ * The commands are generated from a seed by the configured command mix and key distribution, so every run
+ * of the same settings executes the same commands. They are submitted either in an open loop, at a fixed rate
+ * regardless of the completions, or in a closed loop, by a fixed number of concurrent clients each waiting for
+ * the completion of its previous command. The completions are tracked by the completion listener of the executors,
+ * and the latencies are measured from the intended submission time, so a stalled system is not hidden
+ * by the open loop generator falling behind its schedule.
+ * <p>
+ * The executors log to the quiet sink during the runs, the reports are printed as JSON lines.
+ * No command is submitted after the timeout of the run, the commands left out are reported as not completed.
+ */
+public class LoadGenerator {
+    private final Repository<User, UserMapper> repository;
+
+    private final Settings settings;
+
+    /**
+     * Constructs a new LoadGenerator with the specified repository and settings.
+     *
+     * @param repository The user repository used by the executors.
+     * @param settings   The settings of the load.
+     */
+    public LoadGenerator(Repository<User, UserMapper> repository, Settings settings) {
+        this.repository = repository;
+        this.settings = settings;
+    }
+
+    /**
+     * Runs the load generator.
+     * <p>
+     * Supported options, in addition to the storage options of the application:
+     * <ul>
+     *     <li>--commands=...: The number of the commands per run, 100000 by default</li>
+     *     <li>--runs=...: The number of the runs, 3 by default</li>
+     *     <li>--consumers=...: The number of the consumers, 1 by default</li>
+     *     <li>--arrival=open|closed: The arrival model, closed by default</li>
+     *     <li>--rate=...: The commands per second submitted in the open loop, 10000 by default</li>
+     *     <li>--concurrency=...: The number of the concurrent clients in the closed loop, 16 by default</li>
+     *     <li>--mix=...: The command mix, add=90,deleteall=1,help=4,printall=5 by default</li>
+     *     <li>--keys=uniform|zipf: The distribution of the user ids, uniform by default</li>
+     *     <li>--key-space=...: The number of the distinct user ids, 1000000 by default</li>
+     *     <li>--zipf-exponent=...: The skew of the zipf distribution, 1 by default</li>
+     *     <li>--seed=...: The seed of the generated commands, 1 by default</li>
+     *     <li>--timeout-seconds=...: The maximum duration of a run, 60 by default</li>
+     * </ul>
+     *
+     * @param args The command-line arguments in --name=value format.
+     * @throws InterruptedException if the run is interrupted.
+     */
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = SoitronTaskMain.parseOptions(args);
+        int keySpace = Integer.parseInt(options.getOrDefault("key-space", "1000000"));
+        KeyDistribution keys = options.getOrDefault("keys", "uniform").equalsIgnoreCase("zipf") ?
+                KeyDistribution.zipf(keySpace, Double.parseDouble(options.getOrDefault("zipf-exponent", "1"))) :
+                KeyDistribution.uniform(keySpace);
+        Settings settings = new Settings(
+                Integer.parseInt(options.getOrDefault("commands", "100000")),
+                Integer.parseInt(options.getOrDefault("consumers", "1")),
+                Arrival.valueOf(options.getOrDefault("arrival", "closed").toUpperCase()),
+                Double.parseDouble(options.getOrDefault("rate", "10000")),
+                Integer.parseInt(options.getOrDefault("concurrency", "16")),
+                CommandMix.parse(options.getOrDefault("mix", "add=90,deleteall=1,help=4,printall=5")),
+                keys,
+                Long.parseLong(options.getOrDefault("seed", "1")),
+                Long.parseLong(options.getOrDefault("timeout-seconds", "60")));
+        LoadGenerator generator = new LoadGenerator(SoitronTaskMain.createUserRepository(options), settings);
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        for (int run = 0; run < runs; ++run) {
+            System.out.println(generator.run(run).toJson());
+        }
+    }
+
+    /**
+     * Gets the total number and duration of the garbage collections since the start of the JVM.
+     *
+     * @return The number of the collections and their duration in milliseconds.
+     */
+    private static long[] getGcTotals() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    /**
+     * Generates the commands of a run from the seed.
+     * Every command is a distinct String instance, so their completions can be matched by identity.
+     *
+     * @return The generated command lines.
+     */
+    @SuppressWarnings("StringOperationCanBeSimplified")
+    public String[] generateCommands() {
+        Random random = new Random(settings.seed());
+        String[] lines = new String[settings.commandCount()];
+        for (int i = 0; i < lines.length; ++i) {
+            lines[i] = new String(settings.mix().next(random, settings.keys()));
+        }
+        return lines;
+    }
+
+    /**
+     * Executes a single run of the load on an emptied repository and measures it.
+     *
+     * @param run The index of the run, used in the report.
+     * @return The report of the run.
+     * @throws InterruptedException if the run is interrupted.
+     */
+    @SneakyThrows(java.sql.SQLException.class)
+    public LoadReport run(int run) throws InterruptedException {
+        String[] lines = generateCommands();
+        repository.deleteAll();
+
+        Queue<String> queue = new LinkedList<>();
+        Map<String, Integer> inFlight = new IdentityHashMap<>();
+        long[] startNanos = new long[lines.length];
+        long[] latencyNanos = new long[lines.length];
+        AtomicLong errors = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(lines.length);
+        Semaphore clients = new Semaphore(settings.concurrency());
+
+        List<CommandExecutor> consumers = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < settings.consumerCount(); ++i) {
+            CommandExecutor consumer = new CommandExecutor(queue, repository);
+            consumer.setLogSink(LogSink.QUIET);
+            consumer.setCompletionListener((command, success) -> {
+                long now = System.nanoTime();
+                int index;
+                synchronized (inFlight) {
+                    index = inFlight.remove(command.getLine());
+                }
+                latencyNanos[index] = now - startNanos[index];
+                if (!success) {
+                    errors.incrementAndGet();
+                }
+                clients.release();
+                done.countDown();
+            });
+            consumers.add(consumer);
+            threads.add(new Thread(consumer, "load-consumer-" + (i + 1)));
+        }
+
+        System.gc();
+        long[] gcBefore = getGcTotals();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP).toList();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(settings.timeoutSeconds());
+        int submitted = 0;
+        long end;
+        try {
+            threads.forEach(Thread::start);
+            long intervalNanos = (long) (1e9 / settings.rate());
+            for (; submitted < lines.length; ++submitted) {
+                int i = submitted;
+                if (settings.arrival() == Arrival.OPEN) {
+                    startNanos[i] = start + i * intervalNanos;
+                    if (startNanos[i] - deadline > 0) {
+                        break;
+                    }
+                    long delay;
+                    while ((delay = startNanos[i] - System.nanoTime()) > 0) {
+                        LockSupport.parkNanos(delay);
+                    }
+                } else {
+                    if (!clients.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                        break;
+                    }
+                    startNanos[i] = System.nanoTime();
+                }
+                synchronized (inFlight) {
+                    inFlight.put(lines[i], i);
+                }
+                synchronized (queue) {
+                    queue.add(lines[i]);
+                    queue.notify();
+                }
+            }
+            done.await(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            end = System.nanoTime();
+        } finally {
+            consumers.forEach(CommandExecutor::stop);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        long[] gcAfter = getGcTotals();
+
+        int completed = (int) (lines.length - done.getCount());
+        long[] completedLatencies = new long[completed];
+        synchronized (inFlight) {
+            int j = 0;
+            for (int i = 0; i < submitted && j < completed; ++i) {
+                if (!inFlight.containsKey(lines[i])) {
+                    completedLatencies[j++] = latencyNanos[i];
+                }
+            }
+        }
+        Arrays.sort(completedLatencies);
+        return new LoadReport(run, settings.arrival(), lines.length, completed, errors.get(), end - start,
+                completedLatencies, gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1],
+                ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(),
+                heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum());
+    }
+
+    /**
+     * The Arrival enum lists the arrival models of the commands.
+     */
+    public enum Arrival {
+        /**
+         * The commands are submitted at a fixed rate, regardless of the completions.
+         */
+        OPEN,
+        /**
+         * The commands are submitted by a fixed number of clients, each waiting for its previous command.
+         */
+        CLOSED
+    }
+
+    /**
+     * The Settings record holds the settings of the load.
+     *
+     * @param commandCount   The number of the commands per run.
+     * @param consumerCount  The number of the consumers.
+     * @param arrival        The arrival model of the commands.
+     * @param rate           The commands per second submitted in the open loop.
+     * @param concurrency    The number of the concurrent clients in the closed loop.
+     * @param mix            The command mix.
+     * @param keys           The distribution of the user ids.
+     * @param seed           The seed of the generated commands.
+     * @param timeoutSeconds The maximum time to wait for the completion of the commands.
+     */
+    public record Settings(int commandCount, int consumerCount, Arrival arrival, double rate, int concurrency,
+                           CommandMix mix, KeyDistribution keys, long seed, long timeoutSeconds) {
+    }
+}
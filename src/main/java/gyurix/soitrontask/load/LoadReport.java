@@ -0,0 +1,77 @@
+package gyurix.soitrontask.load;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The LoadReport record holds the measurements of a single LoadGenerator run.
+ * The latencies are measured from the intended submission time of the commands to their completion.
+ *
+ * @param run              The index of the run.
+ * @param arrival          The arrival model of the run.
+ * @param commands         The number of the submitted commands.
+ * @param completed        The number of the completed commands.
+ * @param errors           The number of the commands which failed.
+ * @param durationNanos    The duration of the run, from the first submission to the last completion.
+ * @param latenciesNanos   The sorted latencies of the completed commands.
+ * @param gcCount          The number of the garbage collections during the run.
+ * @param gcTimeMillis     The time spent in garbage collection during the run.
+ * @param heapUsedBytes    The used heap memory at the end of the run.
+ * @param heapPeakBytes    The sum of the peak usages of the heap memory pools during the run.
+ */
+public record LoadReport(int run, LoadGenerator.Arrival arrival, int commands, int completed, long errors,
+                         long durationNanos, long[] latenciesNanos, long gcCount, long gcTimeMillis,
+                         long heapUsedBytes, long heapPeakBytes) {
+    /**
+     * Gets the percentile of the latencies.
+     *
+     * @param percentile The percentile between 0 and 100.
+     * @return The latency in nanoseconds, or 0 if no command was completed.
+     */
+    public long getLatencyPercentileNanos(double percentile) {
+        if (latenciesNanos.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * latenciesNanos.length) - 1;
+        return latenciesNanos[Math.max(0, Math.min(index, latenciesNanos.length - 1))];
+    }
+
+    /**
+     * Gets the number of the completed commands per second.
+     *
+     * @return The throughput of the run.
+     */
+    public double getThroughput() {
+        return durationNanos == 0 ? 0 : completed * 1e9 / durationNanos;
+    }
+
+    /**
+     * Converts the report to a single line JSON object, the latencies are in microseconds.
+     *
+     * @return The JSON representation of the report.
+     */
+    public String toJson() {
+        return String.format(Locale.ROOT, "{\"run\":%d,\"arrival\":\"%s\",\"commands\":%d,\"completed\":%d," +
+                        "\"errors\":%d,\"durationMillis\":%d,\"throughputPerSecond\":%.1f," +
+                        "\"latencyMicros\":{\"mean\":%d,\"p50\":%d,\"p90\":%d,\"p99\":%d,\"p999\":%d,\"max\":%d}," +
+                        "\"gc\":{\"count\":%d,\"timeMillis\":%d}," +
+                        "\"heap\":{\"usedBytes\":%d,\"peakBytes\":%d}}",
+                run, arrival.name().toLowerCase(), commands, completed, errors,
+                TimeUnit.NANOSECONDS.toMillis(durationNanos), getThroughput(),
+                micros((long) Arrays.stream(latenciesNanos).average().orElse(0)),
+                micros(getLatencyPercentileNanos(50)), micros(getLatencyPercentileNanos(90)),
+                micros(getLatencyPercentileNanos(99)), micros(getLatencyPercentileNanos(99.9)),
+                micros(getLatencyPercentileNanos(100)), gcCount, gcTimeMillis, heapUsedBytes, heapPeakBytes);
+    }
+
+    /**
+     * Converts nanoseconds to microseconds.
+     *
+     * @param nanos The duration in nanoseconds.
+     * @return The duration in microseconds.
+     */
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
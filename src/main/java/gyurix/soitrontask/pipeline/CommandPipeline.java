@@ -0,0 +1,321 @@
+package gyurix.soitrontask.pipeline;
+
+import gyurix.soitrontask.QueueHolder;
+import gyurix.soitrontask.command.Command;
+import gyurix.soitrontask.command.CommandError;
+import gyurix.soitrontask.command.CommandResult;
+import gyurix.soitrontask.command.CommandValidator;
+import gyurix.soitrontask.consumer.CommandExecutor;
+import gyurix.soitrontask.queue.CompletionTracking;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The CommandPipeline class is an alternative of the ConsumerPool, processing the commands of the queue
+ * in three stages with independent thread pools, connected by bounded queues:
+ * <ul>
+ *     <li>parse: parses and validates the command lines</li>
+ *     <li>execute: executes the commands on the repository, collecting their output instead of printing it</li>
+ *     <li>render: formats the output of the commands, which is printed in the original order of the commands</li>
+ * </ul>
+ * This way slow console output doesn't hold the threads doing the database work, and each stage can be scaled
+ * to where the bottleneck actually is. The output of the commands is printed in their original order and
+ * without interleaving, whatever the thread counts are. With a single execution thread the commands are also
+ * executed in their original order, like by a single CommandExecutor.
+ * <p>
+ * A command failing unexpectedly in any of the stages is completed with an EXECUTION_FAILED error,
+ * so it doesn't hold back the commands after it.
+ * <p>
+ * The pipeline itself runs the thread feeding the commands of the shared queue into the parse stage.
+ */
+public class CommandPipeline extends QueueHolder {
+    /**
+     * The maximum time in milliseconds to wait for new commands before checking the running flag again.
+     */
+    private static final long POLL_TIMEOUT_MILLIS = 10;
+
+    private final Stage<ExecutedCommand, RenderedCommand> renderStage;
+
+    private final Stage<ParsedCommand, ExecutedCommand> executeStage;
+
+    private final List<CommandExecutor> executors = new ArrayList<>();
+
+    private final Stage<String, ParsedCommand> parseStage;
+
+    private final Settings settings;
+
+    /**
+     * The listener notified after rendering each command, or null if no listener is set.
+     */
+    @Setter
+    private volatile CommandExecutor.CompletionListener completionListener;
+
+    private volatile boolean running = true;
+
+    /**
+     * The executor of each execution thread, the executors are not thread safe.
+     */
+    private final ThreadLocal<CommandExecutor> executor;
+
+    /**
+     * Constructs a new CommandPipeline with the specified command queue, executor factory and settings.
+     *
+     * @param queue    The queue that stores the commands to be executed.
+     * @param factory  The factory creating the executors of the execution threads. The executors are only used for
+     *                 executing the commands, their own queue and coalescer are ignored.
+     * @param settings The settings of the pipeline.
+     */
+    public CommandPipeline(Queue<String> queue, Supplier<CommandExecutor> factory, Settings settings) {
+        super(queue);
+        this.settings = settings;
+        executor = ThreadLocal.withInitial(() -> {
+            CommandExecutor created = factory.get();
+            synchronized (executors) {
+                executors.add(created);
+            }
+            return created;
+        });
+        renderStage = new Stage<>("render", settings.queueCapacity(), CommandPipeline::render,
+                CommandPipeline::renderFailure, item -> print(item.value()));
+        executeStage = new Stage<>("execute", settings.queueCapacity(), this::execute, CommandPipeline::executeFailure,
+                submit(renderStage));
+        parseStage = new Stage<>("parse", settings.queueCapacity(), CommandPipeline::parse,
+                CommandPipeline::parseFailure, submit(executeStage));
+    }
+
+    /**
+     * Parses and validates a command line.
+     *
+     * @param line The command line.
+     * @return The parsed command with its validation error.
+     */
+    private static ParsedCommand parse(String line) {
+        Command command = new Command(line);
+        return new ParsedCommand(command, CommandValidator.validate(command));
+    }
+
+    /**
+     * Creates the result of a command line which failed to be parsed, it is rejected by the execution stage.
+     *
+     * @param line The command line.
+     * @param e    The exception thrown by the parsing.
+     * @return The parsed command with an execution failure as its validation error.
+     */
+    private static ParsedCommand parseFailure(String line, RuntimeException e) {
+        return new ParsedCommand(new Command(line), new CommandError(CommandError.Code.EXECUTION_FAILED, 0));
+    }
+
+    /**
+     * Executes a parsed command by the executor of the current thread.
+     *
+     * @param parsed The parsed command.
+     * @return The executed command with its collected output.
+     */
+    private ExecutedCommand execute(ParsedCommand parsed) {
+        List<CommandExecutor.Output> output = new ArrayList<>();
+        CommandResult result = executor.get().executeDeferred(parsed.command(), parsed.error(), output);
+        return new ExecutedCommand(parsed.command(), result, output);
+    }
+
+    /**
+     * Creates the result of a command which failed to be executed unexpectedly.
+     *
+     * @param parsed The parsed command.
+     * @param e      The exception thrown by the execution.
+     * @return The executed command with a failed result and the error lines as its output.
+     */
+    private static ExecutedCommand executeFailure(ParsedCommand parsed, RuntimeException e) {
+        CommandError error = new CommandError(CommandError.Code.EXECUTION_FAILED, 0);
+        return new ExecutedCommand(parsed.command(), new CommandResult.Failed(error),
+                List.of(new CommandExecutor.Output(error.format(parsed.command()), true),
+                        new CommandExecutor.Output(e.getClass().getSimpleName() + " - " + e.getMessage(), true)));
+    }
+
+    /**
+     * Gets a human-readable summary of the failed commands of all the execution threads by their error codes.
+     *
+     * @return The summary of the error counters.
+     */
+    public String getErrorStats() {
+        synchronized (executors) {
+            return CommandExecutor.getErrorStats(executors);
+        }
+    }
+
+    /**
+     * Gets the stages of the pipeline in their processing order.
+     *
+     * @return The list of the stages.
+     */
+    public List<Stage<?, ?>> getStages() {
+        return List.of(parseStage, executeStage, renderStage);
+    }
+
+    /**
+     * Gets a human-readable summary of the stages, showing where the commands are waiting.
+     *
+     * @return The summary of the stage statistics.
+     */
+    public String getStats() {
+        StringBuilder sb = new StringBuilder("Pipeline stages:");
+        for (Stage<?, ?> stage : getStages()) {
+            sb.append("\n- ").append(stage.getStats());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Prints the output of a rendered command, reports its completion to the queue if the queue tracks it,
+     * and notifies the completion listener.
+     * It is called by the render stage in the original order of the commands, and the lines of a command are printed
+     * at once, so they are not interleaved with the lines of the other commands.
+     *
+     * @param rendered The rendered command.
+     */
+    private void print(RenderedCommand rendered) {
+        for (int i = 0; i < rendered.lines().size(); ++i) {
+            if (rendered.errors().get(i)) {
+                logError(rendered.lines().get(i));
+            } else {
+                log(rendered.lines().get(i));
+            }
+        }
+        if (queue instanceof CompletionTracking tracking) {
+            tracking.complete(rendered.command().getLine());
+        }
+        CommandExecutor.CompletionListener listener = completionListener;
+        if (listener != null) {
+            listener.onCompleted(rendered.command(), rendered.result());
+        }
+    }
+
+    /**
+     * Formats the output of an executed command.
+     *
+     * @param executed The executed command.
+     * @return The rendered command with its formatted output lines.
+     */
+    private static RenderedCommand render(ExecutedCommand executed) {
+        List<String> lines = new ArrayList<>(executed.output().size());
+        List<Boolean> errors = new ArrayList<>(executed.output().size());
+        for (CommandExecutor.Output output : executed.output()) {
+            lines.add(output.message().toString());
+            errors.add(output.error());
+        }
+        return new RenderedCommand(executed.command(), executed.result(), lines, errors);
+    }
+
+    /**
+     * Creates the rendered form of a command whose output failed to be formatted, with only an error line.
+     *
+     * @param executed The executed command.
+     * @param e        The exception thrown by the formatting.
+     * @return The rendered command with the error line.
+     */
+    private static RenderedCommand renderFailure(ExecutedCommand executed, RuntimeException e) {
+        return new RenderedCommand(executed.command(), executed.result(),
+                List.of("Failed to render the output of command \"" + executed.command().getLine() + "\": " +
+                        e.getClass().getSimpleName() + " - " + e.getMessage()), List.of(true));
+    }
+
+    /**
+     * Runs the pipeline. It starts the threads of the stages, then feeds the commands of the queue into
+     * the parse stage until the pipeline is stopped.
+     */
+    public void run() {
+        log("Started pipeline");
+        renderStage.start(settings.renderThreads());
+        executeStage.start(settings.executeThreads());
+        parseStage.start(settings.parseThreads());
+        long sequence = 0;
+        try {
+            while (running) {
+                String line;
+                synchronized (queue) {
+                    if (queue.isEmpty()) {
+                        queue.wait(POLL_TIMEOUT_MILLIS);
+                    }
+                    line = running ? queue.poll() : null;
+                }
+                if (line != null) {
+                    parseStage.submit(new Stage.Item<>(sequence++, line));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the pipeline and the threads of its stages.
+     */
+    public void stop() {
+        running = false;
+        for (Stage<?, ?> stage : getStages()) {
+            stage.stop();
+        }
+    }
+
+    /**
+     * Creates a receiver submitting the results of a stage into the given next stage.
+     *
+     * @param stage The next stage.
+     * @param <T>   The type of the results.
+     * @return The receiver of the results.
+     */
+    private static <T> Consumer<Stage.Item<T>> submit(Stage<T, ?> stage) {
+        return item -> {
+            try {
+                stage.submit(item);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        };
+    }
+
+    /**
+     * The ParsedCommand record is the result of the parse stage.
+     *
+     * @param command The parsed command.
+     * @param error   The validation error of the command, or null if it is valid.
+     */
+    private record ParsedCommand(Command command, CommandError error) {
+    }
+
+    /**
+     * The ExecutedCommand record is the result of the execution stage.
+     *
+     * @param command The executed command.
+     * @param result  The result of the command.
+     * @param output  The output collected during the execution.
+     */
+    private record ExecutedCommand(Command command, CommandResult result, List<CommandExecutor.Output> output) {
+    }
+
+    /**
+     * The RenderedCommand record is the result of the render stage.
+     *
+     * @param command The executed command.
+     * @param result  The result of the command.
+     * @param lines   The formatted output lines.
+     * @param errors  The flags of the output lines, true for the error lines.
+     */
+    private record RenderedCommand(Command command, CommandResult result, List<String> lines, List<Boolean> errors) {
+    }
+
+    /**
+     * The Settings record holds the sizing settings of a CommandPipeline.
+     *
+     * @param parseThreads   The number of the threads of the parse stage.
+     * @param executeThreads The number of the threads of the execution stage.
+     * @param renderThreads  The number of the threads of the render stage.
+     * @param queueCapacity  The capacity of the queue in front of each stage.
+     */
+    public record Settings(int parseThreads, int executeThreads, int renderThreads, int queueCapacity) {
+    }
+}
@@ -0,0 +1,232 @@
+package gyurix.soitrontask.pipeline;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * The Stage class is a step of a CommandPipeline, processing its items by a pool of worker threads.
+ * <p>
+ * The items are taken from a bounded input queue, so a slow stage blocks the stages before it instead of
+ * buffering an unbounded amount of work. The items are numbered when they enter the pipeline, and each stage hands over
+ * its results to the next one in the order of their numbers, so the order of the items is kept through
+ * the pipeline, while the items are processed in parallel within each stage.
+ * <p>
+ * If the handler fails on an item, the failure handler turns the exception into an error result, which is passed on
+ * in place of the result of the item. This way a failing item neither stops the worker nor leaves a gap
+ * in the sequence numbers, which would hold back the results of all the later items.
+ * <p>
+ * The depth of the input queue, its peak, the number of processed items and the time spent by the workers
+ * are measured, so the bottleneck of the pipeline can be found and the thread counts of the stages adjusted.
+ *
+ * @param <I> The type of the input items.
+ * @param <O> The type of the results.
+ */
+public class Stage<I, O> {
+    /**
+     * The maximum time in milliseconds to wait for an item before checking the running flag again.
+     */
+    private static final long POLL_TIMEOUT_MILLIS = 10;
+
+    private final AtomicLong busyNanos = new AtomicLong();
+
+    private final int capacity;
+
+    private final BiFunction<I, RuntimeException, O> failureHandler;
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final Function<I, O> handler;
+
+    private final BlockingQueue<Item<I>> input;
+
+    @Getter
+    private final String name;
+
+    private final Consumer<Item<O>> next;
+
+    private final AtomicInteger peakDepth = new AtomicInteger();
+
+    /**
+     * The results finished before the results preceding them, by their sequence numbers.
+     */
+    private final Map<Long, O> pending = new HashMap<>();
+
+    private final AtomicLong processedCount = new AtomicLong();
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    private long nextSequence;
+
+    private volatile boolean running = true;
+
+    /**
+     * Constructs a new Stage.
+     *
+     * @param name           The name of the stage, used in the names of its worker threads.
+     * @param capacity       The capacity of the input queue.
+     * @param handler        The function processing an item, called by the worker threads concurrently.
+     * @param failureHandler The function creating the error result of an item from the exception thrown
+     *                       by the handler, it must not throw.
+     * @param next           The receiver of the results in the original order, e.g. the submit method
+     *                       of the next stage.
+     */
+    public Stage(String name, int capacity, Function<I, O> handler, BiFunction<I, RuntimeException, O> failureHandler,
+                 Consumer<Item<O>> next) {
+        this.name = name;
+        this.capacity = capacity;
+        this.handler = handler;
+        this.failureHandler = failureHandler;
+        this.next = next;
+        input = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Gets the number of the items waiting in the input queue.
+     *
+     * @return The current depth of the input queue.
+     */
+    public int getDepth() {
+        return input.size();
+    }
+
+    /**
+     * Gets the number of the items the handler failed on, which were passed on as error results.
+     *
+     * @return The number of the failed items.
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    /**
+     * Gets the largest number of the items waiting in the input queue since the stage was created.
+     *
+     * @return The peak depth of the input queue.
+     */
+    public int getPeakDepth() {
+        return peakDepth.get();
+    }
+
+    /**
+     * Gets the number of the items processed by the stage.
+     *
+     * @return The number of the processed items.
+     */
+    public long getProcessedCount() {
+        return processedCount.get();
+    }
+
+    /**
+     * Gets a human-readable summary of the stage.
+     *
+     * @return The summary of the stage statistics.
+     */
+    public String getStats() {
+        long processed = getProcessedCount();
+        return name + ": " + workers.size() + " workers, depth: " + getDepth() + ", peak depth: " + getPeakDepth() +
+                ", processed: " + processed + ", failed: " + getFailedCount() + ", average micros: " +
+                (processed == 0 ? 0 : busyNanos.get() / processed / 1000);
+    }
+
+    /**
+     * Passes a result to the next stage once all the results preceding it were passed.
+     * A worker getting too far ahead of the oldest unfinished item waits, so the number of the held back results
+     * is bounded by the capacity of the stage.
+     *
+     * @param sequence The sequence number of the result.
+     * @param result   The result.
+     * @throws InterruptedException if the waiting is interrupted.
+     */
+    private synchronized void release(long sequence, O result) throws InterruptedException {
+        while (sequence != nextSequence && pending.size() >= capacity) {
+            wait();
+        }
+        pending.put(sequence, result);
+        while (pending.containsKey(nextSequence)) {
+            next.accept(new Item<>(nextSequence, pending.remove(nextSequence)));
+            ++nextSequence;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Starts the worker threads of the stage.
+     *
+     * @param threadCount The number of the worker threads.
+     */
+    public synchronized void start(int threadCount) {
+        for (int i = 0; i < threadCount; ++i) {
+            Thread worker = new Thread(this::work, name + "-" + (workers.size() + 1));
+            workers.add(worker);
+            worker.start();
+        }
+    }
+
+    /**
+     * Stops the worker threads of the stage. The items being processed are finished, the queued ones are dropped.
+     */
+    public synchronized void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+    }
+
+    /**
+     * Puts an item into the input queue of the stage, waiting for free space if the queue is full.
+     *
+     * @param item The item with its sequence number.
+     * @throws InterruptedException if the waiting is interrupted.
+     */
+    public void submit(Item<I> item) throws InterruptedException {
+        input.put(item);
+        peakDepth.accumulateAndGet(input.size(), Math::max);
+    }
+
+    /**
+     * The loop of a worker thread, processing the items of the input queue until the stage is stopped.
+     */
+    private void work() {
+        try {
+            while (running) {
+                Item<I> item = input.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                if (item == null) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                O result;
+                try {
+                    result = handler.apply(item.value());
+                } catch (RuntimeException e) {
+                    failedCount.incrementAndGet();
+                    result = failureHandler.apply(item.value(), e);
+                }
+                busyNanos.addAndGet(System.nanoTime() - start);
+                processedCount.incrementAndGet();
+                release(item.sequence(), result);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * The Item record is an item of the pipeline with its sequence number.
+     *
+     * @param sequence The sequence number of the item, starting from 0 without gaps.
+     * @param value    The item.
+     * @param <T>      The type of the item.
+     */
+    public record Item<T>(long sequence, T value) {
+    }
+}
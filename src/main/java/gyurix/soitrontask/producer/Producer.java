@@ -1,6 +1,10 @@
 package gyurix.soitrontask.producer;
 
 import gyurix.soitrontask.QueueHolder;
+import gyurix.soitrontask.command.Command;
+import gyurix.soitrontask.command.CommandType;
+import gyurix.soitrontask.queue.CommandSink;
+import gyurix.soitrontask.session.Session;
 
 import java.util.NoSuchElementException;
 import java.util.Queue;
@@ -8,10 +12,28 @@ import java.util.Scanner;
 
 /**
  * The Producer class represents a producer that reads user input commands and adds them to a queue.
+ * <p>
+ * A producer with a session supports transactions: the commands from a Begin to the next Commit or Rollback
+ * are put into the mailbox of the session, and only their session markers are added to the queue.
  */
 public class Producer extends QueueHolder {
     private final Scanner scanner;
 
+    /**
+     * The sink adding the commands of the producer to the queue.
+     */
+    private final CommandSink sink;
+
+    /**
+     * The session of the producer, or null if the producer doesn't support transactions.
+     */
+    private final Session session;
+
+    /**
+     * True if the producer is inside a transaction, so its commands are routed to its session.
+     */
+    private boolean inTransaction;
+
     /**
      * Constructs a Producer object with the specified queue and scanner.
      *
@@ -19,18 +41,45 @@ public class Producer extends QueueHolder {
      * @param scanner The scanner used for reading user input commands.
      */
     public Producer(Queue<String> queue, Scanner scanner) {
+        this(queue, scanner, null);
+    }
+
+    /**
+     * Constructs a Producer object with the specified queue, scanner and session.
+     *
+     * @param queue   The queue to which the commands will be added.
+     * @param scanner The scanner used for reading user input commands.
+     * @param session The session of the producer, or null if the producer doesn't support transactions.
+     */
+    public Producer(Queue<String> queue, Scanner scanner, Session session) {
+        this(queue, CommandSink.of(queue), scanner, session);
+    }
+
+    /**
+     * Constructs a Producer object adding its commands to the queue through the specified sink,
+     * e.g. the sub-queue of the producer in a FairCommandQueue.
+     *
+     * @param queue   The queue to which the commands will be added.
+     * @param sink    The sink adding the commands to the queue and waking up the consumers.
+     * @param scanner The scanner used for reading user input commands.
+     * @param session The session of the producer, or null if the producer doesn't support transactions.
+     */
+    public Producer(Queue<String> queue, CommandSink sink, Scanner scanner, Session session) {
         super(queue);
+        this.sink = sink;
         this.scanner = scanner;
+        this.session = session;
     }
 
     /**
      * Runs the producer to continuously read user input commands and add them to the queue.
      * The method terminates when a NoSuchElementException occurs, indicating the end of input.
      * <p>
-     * Note: Synchronization of both the queue and the scanner ensures that input commands are executed
-     * in the correct order, even with multiple producers. By synchronizing the queue inside the scanner block,
-     * thread safety and mutual exclusion are achieved, preventing issues related to command execution order and
-     * preserving the desired program behavior.
+     * Note: Synchronization of the scanner ensures that input commands are added in the correct order,
+     * even with multiple producers, as the commands are added to the queue inside the scanner block.
+     * The sink of the producer synchronizes on the queue, and notifies a consumer waiting for it.
+     * If the queue rejects a command, e.g. because the producer exceeded its rate limit, the rejection is logged.
+     * The transaction of the producer is not ended by the end of the input, it is aborted by its timeout instead.
      */
     public void run() {
         log("Started producer");
@@ -40,8 +89,18 @@ public class Producer extends QueueHolder {
                 String command;
                 synchronized (scanner) {
                     command = scanner.nextLine();
-                    synchronized (queue) {
-                        queue.add(command);
+                    CommandType type = session == null ? null : new Command(command).getType();
+                    boolean routed = type != null && (inTransaction || type == CommandType.BEGIN);
+                    String line = routed ? session.submit(command) : command;
+                    if (!sink.offer(line)) {
+                        if (routed) {
+                            session.unsubmit(line);
+                        }
+                        logError("Command \"" + command + "\" was rejected by the queue");
+                        continue;
+                    }
+                    if (routed) {
+                        inTransaction = type != CommandType.COMMIT && type != CommandType.ROLLBACK;
                     }
                 }
             }
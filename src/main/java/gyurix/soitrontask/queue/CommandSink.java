@@ -0,0 +1,37 @@
+package gyurix.soitrontask.queue;
+
+import java.util.Queue;
+
+/**
+ * The CommandSink interface is the add-only side of a command queue, used by the components submitting commands,
+ * like the producers and the CommandService. The commands are polled through the command queue itself.
+ */
+@FunctionalInterface
+public interface CommandSink {
+    /**
+     * Gets a sink adding the commands to the given queue, which synchronizes on the queue
+     * and notifies a consumer waiting for it.
+     *
+     * @param queue The command queue.
+     * @return The sink of the queue.
+     */
+    static CommandSink of(Queue<String> queue) {
+        return line -> {
+            synchronized (queue) {
+                if (!queue.offer(line)) {
+                    return false;
+                }
+                queue.notify();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Adds a command line, waking up a consumer waiting for new commands.
+     *
+     * @param line The command line.
+     * @return True if the command was accepted, false if it was rejected.
+     */
+    boolean offer(String line);
+}
@@ -0,0 +1,15 @@
+package gyurix.soitrontask.queue;
+
+/**
+ * The CompletionTracking interface is implemented by the command queues which need to know when the commands
+ * polled from them are completed, e.g. for limiting the number of the commands in flight.
+ * The consumers of such a queue report the completion of every polled command line.
+ */
+public interface CompletionTracking {
+    /**
+     * Reports that the processing of a polled command line is completed.
+     *
+     * @param line The command line, the same instance which was polled from the queue.
+     */
+    void complete(String line);
+}
@@ -0,0 +1,322 @@
+package gyurix.soitrontask.queue;
+
+import lombok.Getter;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The FairCommandQueue class is a command queue with per-producer accounting and admission control,
+ * which can be used instead of the FIFO queue shared by the producers and the consumers.
+ * <p>
+ * Every producer gets its own sub-queue through {@link #forProducer(String, Limits)}, which should be passed
+ * to the producer as its command sink. The sub-queue enforces the limits of the producer when commands are added:
+ * a token bucket rate limit and a maximum number of in-flight commands, i.e. commands added but not yet completed
+ * by the consumers. When a limit is hit, the command is either rejected or delayed until the limit allows it.
+ * <p>
+ * The consumers poll this queue, which drains the sub-queues in round-robin order, so a chatty producer
+ * can not starve the others, and they report the completion of the polled commands through
+ * {@link #complete(String)}. Unlike the LinkedList used by default, this queue is thread safe, but it still
+ * supports the synchronization of its users on it.
+ */
+public class FairCommandQueue extends AbstractQueue<String> implements CompletionTracking {
+    /**
+     * The sub-queues having pending commands, in their round-robin order.
+     */
+    private final ArrayDeque<ProducerQueue> active = new ArrayDeque<>();
+
+    /**
+     * The producers of the polled but not yet completed command lines, by the identity of the lines.
+     * A line instance added several times has the producers of its polls in their order.
+     */
+    private final Map<String, ArrayDeque<ProducerQueue>> executing = new IdentityHashMap<>();
+
+    private final Map<String, ProducerQueue> producers = new LinkedHashMap<>();
+
+    private int size;
+
+    /**
+     * Reports the completion of a polled command line, releasing the in-flight quota of its producer.
+     * The producers delayed by their in-flight limit are notified.
+     *
+     * @param line The completed command line, the same instance which was polled from the queue.
+     */
+    @Override
+    public synchronized void complete(String line) {
+        ArrayDeque<ProducerQueue> producers = executing.get(line);
+        if (producers == null) {
+            return;
+        }
+        ProducerQueue producer = producers.poll();
+        if (producers.isEmpty()) {
+            executing.remove(line);
+        }
+        --producer.inFlightCount;
+        notifyAll();
+    }
+
+    /**
+     * Gets the sub-queue of the given producer, creating it with the given limits if it doesn't exist yet.
+     *
+     * @param name   The unique name of the producer.
+     * @param limits The limits of the producer, only used when the sub-queue is created.
+     * @return The sub-queue of the producer.
+     */
+    public synchronized ProducerQueue forProducer(String name, Limits limits) {
+        return producers.computeIfAbsent(name, key -> new ProducerQueue(key, limits));
+    }
+
+    /**
+     * Gets a human-readable summary of the admission counters of each producer.
+     *
+     * @return The summary of the queue statistics.
+     */
+    public synchronized String getStats() {
+        StringBuilder sb = new StringBuilder("Admission per producer:");
+        for (ProducerQueue producer : producers.values()) {
+            sb.append(' ').append(producer.getName())
+                    .append(" [accepted: ").append(producer.getAcceptedCount())
+                    .append(", rejected: ").append(producer.getRejectedCount())
+                    .append(", delayed: ").append(producer.getDelayedCount())
+                    .append(", delay: ").append(TimeUnit.NANOSECONDS.toMillis(producer.getDelayNanos()))
+                    .append(" ms, pending: ").append(producer.pending.size())
+                    .append(", in flight: ").append(producer.inFlightCount).append(']');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the pending command lines, ordered by their producers.
+     *
+     * @return An iterator over the pending command lines.
+     */
+    @Override
+    public synchronized Iterator<String> iterator() {
+        List<String> lines = new ArrayList<>(size);
+        for (ProducerQueue producer : producers.values()) {
+            lines.addAll(producer.pending);
+        }
+        return lines.iterator();
+    }
+
+    /**
+     * Adds a command line without producer limits, on behalf of an anonymous producer.
+     *
+     * @param line The command line.
+     * @return True if the command was accepted.
+     */
+    @Override
+    public boolean offer(String line) {
+        return forProducer("", Limits.UNLIMITED).offer(line);
+    }
+
+    @Override
+    public synchronized String peek() {
+        ProducerQueue next = active.peek();
+        return next == null ? null : next.pending.peek();
+    }
+
+    /**
+     * Removes and returns the next command line of the next producer in round-robin order.
+     * The command stays in flight until its completion is reported through {@link #complete(String)}.
+     *
+     * @return The next command line, or null if the queue is empty.
+     */
+    @Override
+    public synchronized String poll() {
+        ProducerQueue next = active.poll();
+        if (next == null) {
+            return null;
+        }
+        String line = next.pending.poll();
+        if (!next.pending.isEmpty()) {
+            active.add(next);
+        }
+        executing.computeIfAbsent(line, key -> new ArrayDeque<>()).add(next);
+        --size;
+        return line;
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * The OverflowAction enum lists the ways of handling commands exceeding the limits of their producer.
+     */
+    public enum OverflowAction {
+        /**
+         * The command is rejected, the offer returns false.
+         */
+        REJECT,
+        /**
+         * The producer is blocked until the limits allow adding the command.
+         */
+        DELAY
+    }
+
+    /**
+     * The Limits record holds the admission limits of a producer.
+     *
+     * @param ratePerSecond  The number of commands per second allowed on average, or 0 for no rate limit.
+     * @param burst          The number of commands allowed at once above the average rate.
+     * @param maxInFlight    The maximum number of commands added but not yet completed, or 0 for no limit.
+     * @param overflowAction The way of handling commands exceeding the limits.
+     */
+    public record Limits(double ratePerSecond, int burst, int maxInFlight, OverflowAction overflowAction) {
+        /**
+         * Limits allowing every command.
+         */
+        public static final Limits UNLIMITED = new Limits(0, 0, 0, OverflowAction.DELAY);
+    }
+
+    /**
+     * The ProducerQueue class is the sub-queue of a single producer, enforcing its limits.
+     * Commands can only be added through it, they are polled through the FairCommandQueue.
+     */
+    public class ProducerQueue implements CommandSink {
+        private final Limits limits;
+
+        @Getter
+        private final String name;
+
+        private final ArrayDeque<String> pending = new ArrayDeque<>();
+
+        @Getter
+        private volatile long acceptedCount;
+
+        @Getter
+        private volatile long delayNanos;
+
+        @Getter
+        private volatile long delayedCount;
+
+        /**
+         * The number of the accepted commands of the producer which are not completed yet.
+         */
+        private int inFlightCount;
+
+        private long lastRefillNanos = System.nanoTime();
+
+        @Getter
+        private volatile long rejectedCount;
+
+        private double tokens;
+
+        /**
+         * Constructs a new ProducerQueue with the specified name and limits.
+         *
+         * @param name   The name of the producer.
+         * @param limits The limits of the producer.
+         */
+        private ProducerQueue(String name, Limits limits) {
+            this.name = name;
+            this.limits = limits;
+            this.tokens = limits.burst();
+        }
+
+        /**
+         * Adds a command line of the producer, if the limits of the producer allow it.
+         * Depending on the overflow action of the limits, a command exceeding them is either rejected,
+         * or the calling thread is blocked until the limits allow adding it.
+         *
+         * @param line The command line.
+         * @return True if the command was accepted, false if it was rejected.
+         */
+        @Override
+        public synchronized boolean offer(String line) {
+            long start = System.nanoTime();
+            boolean delayed = false;
+            try {
+                long waitNanos = acquireToken();
+                if (waitNanos > 0) {
+                    if (limits.overflowAction() == OverflowAction.REJECT) {
+                        ++rejectedCount;
+                        return false;
+                    }
+                    delayed = true;
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    --tokens;
+                }
+                synchronized (FairCommandQueue.this) {
+                    while (limits.maxInFlight() > 0 && inFlightCount >= limits.maxInFlight()) {
+                        if (limits.overflowAction() == OverflowAction.REJECT) {
+                            ++rejectedCount;
+                            return false;
+                        }
+                        delayed = true;
+                        FairCommandQueue.this.wait();
+                    }
+                    if (pending.isEmpty()) {
+                        active.add(this);
+                    }
+                    pending.add(line);
+                    ++inFlightCount;
+                    ++size;
+                    ++acceptedCount;
+                    FairCommandQueue.this.notifyAll();
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                ++rejectedCount;
+                return false;
+            } finally {
+                if (delayed) {
+                    ++delayedCount;
+                    delayNanos += System.nanoTime() - start;
+                }
+            }
+        }
+
+        /**
+         * Gets the number of the accepted commands of the producer which are not completed yet.
+         *
+         * @return The number of the commands in flight.
+         */
+        public int getInFlightCount() {
+            synchronized (FairCommandQueue.this) {
+                return inFlightCount;
+            }
+        }
+
+        /**
+         * Gets the number of the commands of the producer which are not polled yet.
+         *
+         * @return The number of the pending commands.
+         */
+        public int getPendingCount() {
+            synchronized (FairCommandQueue.this) {
+                return pending.size();
+            }
+        }
+
+        /**
+         * Refills the token bucket and takes a token from it if possible.
+         *
+         * @return 0 if a token was taken, otherwise the time in nanoseconds until a token becomes available.
+         */
+        private long acquireToken() {
+            if (limits.ratePerSecond() <= 0) {
+                return 0;
+            }
+            long now = System.nanoTime();
+            tokens = Math.min(Math.max(limits.burst(), 1),
+                    tokens + (now - lastRefillNanos) * limits.ratePerSecond() / 1e9);
+            lastRefillNanos = now;
+            if (tokens >= 1) {
+                --tokens;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) * 1e9 / limits.ratePerSecond());
+        }
+    }
+}
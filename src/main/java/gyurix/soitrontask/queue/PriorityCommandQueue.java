@@ -0,0 +1,260 @@
+package gyurix.soitrontask.queue;
+
+import gyurix.soitrontask.command.Command;
+import gyurix.soitrontask.command.PriorityClass;
+
+import java.util.AbstractQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The PriorityCommandQueue class is a multi-level command queue, which can be used instead of the FIFO queue
+ * shared by the producers and the consumers.
+ * <p>
+ * Every command is put into the queue of its priority class, determined by its type, or explicitly by a
+ * {@code [class] } prefix, e.g. {@code [interactive] PrintAll}. The line is polled unchanged, the prefix is skipped
+ * by the parsing of the command, so the completion of the polled line can be matched with the submitted one.
+ * The writes always stay in the WRITE class regardless of their prefix, so they are never reordered.
+ * The commands are FIFO ordered within their class, while the classes are polled by smooth weighted round-robin,
+ * so each class with pending commands gets a share of the polls proportional to its weight.
+ * <p>
+ * As a starvation protection, if the oldest command of a class has been waiting for longer than the maximum wait time,
+ * the oldest such command is polled regardless of the weights.
+ * <p>
+ * Like the LinkedList used by default, the queue is not thread safe, its users must synchronize on it.
+ */
+public class PriorityCommandQueue extends AbstractQueue<String> {
+    private static final PriorityClass[] CLASSES = PriorityClass.values();
+
+    private final long[] currentWeights = new long[CLASSES.length];
+
+    private final long maxWaitNanos;
+
+    private final long[] maxWaitNanosByClass = new long[CLASSES.length];
+
+    private final long[] polledCounts = new long[CLASSES.length];
+
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Entry>[] queues = new ArrayDeque[CLASSES.length];
+
+    private final long[] starvationCounts = new long[CLASSES.length];
+
+    private final long[] totalWaitNanos = new long[CLASSES.length];
+
+    private int size;
+
+    /**
+     * Constructs a new PriorityCommandQueue with the specified starvation protection.
+     *
+     * @param maxWaitMillis The maximum time in milliseconds a command can wait before being polled regardless
+     *                      of the class weights.
+     */
+    public PriorityCommandQueue(long maxWaitMillis) {
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        for (int i = 0; i < CLASSES.length; ++i) {
+            queues[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Gets the average time the commands of the given class spent in the queue.
+     *
+     * @param priorityClass The priority class.
+     * @return The average queue wait time in nanoseconds.
+     */
+    public long getAverageWaitNanos(PriorityClass priorityClass) {
+        int i = priorityClass.ordinal();
+        return polledCounts[i] == 0 ? 0 : totalWaitNanos[i] / polledCounts[i];
+    }
+
+    /**
+     * Gets the longest time a command of the given class spent in the queue.
+     *
+     * @param priorityClass The priority class.
+     * @return The maximum queue wait time in nanoseconds.
+     */
+    public long getMaxWaitNanos(PriorityClass priorityClass) {
+        return maxWaitNanosByClass[priorityClass.ordinal()];
+    }
+
+    /**
+     * Gets the number of the polled commands of the given class.
+     *
+     * @param priorityClass The priority class.
+     * @return The number of the polled commands.
+     */
+    public long getPolledCount(PriorityClass priorityClass) {
+        return polledCounts[priorityClass.ordinal()];
+    }
+
+    /**
+     * Gets the number of the pending commands of the given class.
+     *
+     * @param priorityClass The priority class.
+     * @return The number of the pending commands.
+     */
+    public int getSize(PriorityClass priorityClass) {
+        return queues[priorityClass.ordinal()].size();
+    }
+
+    /**
+     * Gets the number of the commands of the given class, which were polled by the starvation protection.
+     *
+     * @param priorityClass The priority class.
+     * @return The number of the commands polled by the starvation protection.
+     */
+    public long getStarvationCount(PriorityClass priorityClass) {
+        return starvationCounts[priorityClass.ordinal()];
+    }
+
+    /**
+     * Gets a human-readable summary of the queue wait metrics of each class.
+     *
+     * @return The summary of the queue statistics.
+     */
+    public String getStats() {
+        StringBuilder sb = new StringBuilder("Queue wait per class:");
+        for (PriorityClass priorityClass : CLASSES) {
+            sb.append(' ').append(priorityClass)
+                    .append(" [polled: ").append(getPolledCount(priorityClass))
+                    .append(", avg: ").append(TimeUnit.NANOSECONDS.toMicros(getAverageWaitNanos(priorityClass)))
+                    .append(" us, max: ").append(TimeUnit.NANOSECONDS.toMicros(getMaxWaitNanos(priorityClass)))
+                    .append(" us, starved: ").append(getStarvationCount(priorityClass)).append(']');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns an iterator over the pending command lines, ordered by their priority classes.
+     *
+     * @return An iterator over the pending command lines.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        List<String> lines = new ArrayList<>(size);
+        for (ArrayDeque<Entry> queue : queues) {
+            for (Entry entry : queue) {
+                lines.add(entry.line());
+            }
+        }
+        return lines.iterator();
+    }
+
+    /**
+     * Adds a command line to the queue of its priority class.
+     *
+     * @param line The command line, optionally prefixed by its priority class, which is ignored for the writes.
+     *             The line is queued as it is, the prefix is skipped by the parsing of the command.
+     * @return Always true.
+     */
+    @Override
+    public boolean offer(String line) {
+        queues[PriorityClass.of(new Command(line)).ordinal()].add(new Entry(line, System.nanoTime()));
+        ++size;
+        return true;
+    }
+
+    /**
+     * Returns the next command line without removing it from the queue.
+     *
+     * @return The next command line, or null if the queue is empty.
+     */
+    @Override
+    public String peek() {
+        int next = selectClass(System.nanoTime(), false);
+        return next == -1 ? null : queues[next].getFirst().line();
+    }
+
+    /**
+     * Removes and returns the next command line selected by the weighted round-robin or the starvation protection.
+     *
+     * @return The next command line, or null if the queue is empty.
+     */
+    @Override
+    public String poll() {
+        long now = System.nanoTime();
+        int next = selectClass(now, true);
+        if (next == -1) {
+            return null;
+        }
+        Entry entry = queues[next].poll();
+        long wait = now - entry.enqueuedNanos();
+        ++polledCounts[next];
+        totalWaitNanos[next] += wait;
+        maxWaitNanosByClass[next] = Math.max(maxWaitNanosByClass[next], wait);
+        --size;
+        return entry.line();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Selects the class of the next command.
+     *
+     * @param now    The current System.nanoTime() value.
+     * @param update True if the round-robin state should be updated, false for only peeking.
+     * @return The index of the selected class, or -1 if the queue is empty.
+     */
+    private int selectClass(long now, boolean update) {
+        int starved = -1;
+        long oldest = Long.MAX_VALUE;
+        int totalWeight = 0;
+        for (int i = 0; i < CLASSES.length; ++i) {
+            Entry head = queues[i].peek();
+            if (head == null) {
+                continue;
+            }
+            totalWeight += CLASSES[i].getWeight();
+            if (now - head.enqueuedNanos() > maxWaitNanos && head.enqueuedNanos() < oldest) {
+                oldest = head.enqueuedNanos();
+                starved = i;
+            }
+        }
+        if (totalWeight == 0) {
+            return -1;
+        }
+        if (starved != -1) {
+            if (update) {
+                ++starvationCounts[starved];
+            }
+            return starved;
+        }
+        int selected = -1;
+        long best = Long.MIN_VALUE;
+        for (int i = 0; i < CLASSES.length; ++i) {
+            if (queues[i].isEmpty()) {
+                if (update) {
+                    currentWeights[i] = 0;
+                }
+                continue;
+            }
+            long weight = currentWeights[i] + CLASSES[i].getWeight();
+            if (update) {
+                currentWeights[i] = weight;
+            }
+            if (weight > best) {
+                best = weight;
+                selected = i;
+            }
+        }
+        if (update) {
+            currentWeights[selected] -= totalWeight;
+        }
+        return selected;
+    }
+
+    /**
+     * The Entry record represents a pending command line and the time when it was added to the queue.
+     *
+     * @param line          The command line without its priority class prefix.
+     * @param enqueuedNanos The System.nanoTime() value of the moment when the command was added to the queue.
+     */
+    private record Entry(String line, long enqueuedNanos) {
+    }
+}
@@ -0,0 +1,166 @@
+package gyurix.soitrontask.service;
+
+import gyurix.soitrontask.command.Command;
+import gyurix.soitrontask.command.CommandResult;
+import gyurix.soitrontask.consumer.CommandExecutor;
+import gyurix.soitrontask.queue.CommandSink;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The CommandService class is the programmatic entry point of the application for embedding code.
+ * The commands are submitted to the same queue as the ones of the producers, and their typed results are returned
+ * as CompletableFutures, so the callers can keep many commands in flight and compose on their completion
+ * without polling or parsing the logs.
+ * <p>
+ * The service must be set as the completion listener of the CommandExecutors or the CommandPipeline consuming
+ * the queue. The submitted commands are tracked by the identity of their command line strings, so the commands
+ * of the other producers in the same queue are ignored by the service. The queues keep the submitted line instances,
+ * including the ones with a priority class prefix, so the completed commands can be matched with them.
+ * <p>
+ * The commands not completed within the timeout of the service, e.g. because the executors were stopped,
+ * are completed exceptionally with a TimeoutException, and they are no longer tracked.
+ * <p>
+ * The futures are completed on the threads of the executors, so the dependent actions should either be quick,
+ * or use the async variants of the CompletableFuture methods.
+ */
+public class CommandService implements CommandExecutor.CompletionListener {
+    /**
+     * The default time in milliseconds after which the commands in flight are timed out.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 60000;
+
+    /**
+     * The futures of the submitted commands, by their command line strings.
+     */
+    private final Map<String, CompletableFuture<CommandResult>> inFlight = new IdentityHashMap<>();
+
+    private final CommandSink sink;
+
+    private final long timeoutMillis;
+
+    /**
+     * Constructs a new CommandService submitting its commands into the specified queue.
+     *
+     * @param queue The queue consumed by the executors.
+     */
+    public CommandService(Queue<String> queue) {
+        this(CommandSink.of(queue));
+    }
+
+    /**
+     * Constructs a new CommandService submitting its commands through the specified sink,
+     * e.g. the sub-queue of the service in a FairCommandQueue, with the default timeout.
+     *
+     * @param sink The sink adding the commands to the queue consumed by the executors.
+     */
+    public CommandService(CommandSink sink) {
+        this(sink, DEFAULT_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Constructs a new CommandService submitting its commands through the specified sink.
+     *
+     * @param sink          The sink adding the commands to the queue consumed by the executors.
+     * @param timeoutMillis The time in milliseconds after which the commands in flight are timed out.
+     */
+    public CommandService(CommandSink sink, long timeoutMillis) {
+        this.sink = sink;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * Cancels the futures of all the commands in flight, e.g. when the executors are stopped.
+     * The commands may still be executed later, but their results are dropped.
+     */
+    public void cancelAll() {
+        List<CompletableFuture<CommandResult>> futures;
+        synchronized (inFlight) {
+            futures = new ArrayList<>(inFlight.values());
+            inFlight.clear();
+        }
+        futures.forEach(future -> future.completeExceptionally(new CancellationException("Command was cancelled")));
+    }
+
+    /**
+     * Gets the number of the submitted commands which are not completed yet.
+     *
+     * @return The number of the commands in flight.
+     */
+    public int getInFlightCount() {
+        synchronized (inFlight) {
+            return inFlight.size();
+        }
+    }
+
+    /**
+     * Ignored, the service needs the typed results of the commands, which are passed to
+     * {@link #onCompleted(Command, CommandResult)}.
+     *
+     * @param command The processed command.
+     * @param success True if the command was processed successfully, false if it failed or was not found.
+     */
+    @Override
+    public void onCompleted(Command command, boolean success) {
+    }
+
+    /**
+     * Completes the future of a command submitted by the service with the result of the command.
+     *
+     * @param command The processed command.
+     * @param result  The result of the command.
+     */
+    @Override
+    public void onCompleted(Command command, CommandResult result) {
+        CompletableFuture<CommandResult> future;
+        synchronized (inFlight) {
+            future = inFlight.remove(command.getLine());
+        }
+        if (future != null) {
+            future.complete(result);
+        }
+    }
+
+    /**
+     * Submits a command for execution.
+     * The failed commands, e.g. the malformed ones or the ones with duplicate ids, are completed normally with a
+     * {@link CommandResult.Failed} result. The future is completed exceptionally with a RejectedExecutionException
+     * if the queue rejects the command, with a TimeoutException if it is not completed within the timeout,
+     * or with a CancellationException if it is cancelled by {@link #cancelAll()}.
+     *
+     * @param command The command line, e.g. {@code Add (1, "a1", "Robert")} or {@code [interactive] PrintAll}.
+     * @return The future of the result of the command.
+     */
+    public CompletableFuture<CommandResult> submit(String command) {
+        // A copy of the line, so the command can be identified even if the caller submits the same string again
+        String line = new String(command);
+        CompletableFuture<CommandResult> future = new CompletableFuture<>();
+        synchronized (inFlight) {
+            inFlight.put(line, future);
+        }
+        if (sink.offer(line)) {
+            future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((result, error) -> {
+                if (error != null) {
+                    synchronized (inFlight) {
+                        inFlight.remove(line, future);
+                    }
+                }
+            });
+            return future;
+        }
+        synchronized (inFlight) {
+            inFlight.remove(line);
+        }
+        future.completeExceptionally(new RejectedExecutionException("Command \"" + command +
+                "\" was rejected by the queue"));
+        return future;
+    }
+}
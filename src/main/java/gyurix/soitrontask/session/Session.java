@@ -0,0 +1,206 @@
+package gyurix.soitrontask.session;
+
+import gyurix.soitrontask.db.Database;
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.mapper.UserMapper;
+import gyurix.soitrontask.db.repository.Repository;
+import gyurix.soitrontask.db.repository.UserRepository;
+import lombok.Getter;
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+
+/**
+ * The Session class represents the transactional scope of a producer.
+ * <p>
+ * While a transaction of the producer is open, its commands are not put into the shared command queue directly.
+ * They are put into the mailbox of the session, and the shared queue only receives a {@code Session (id)} marker
+ * for each of them. The consumer polling a marker executes the oldest command of the mailbox while holding the lock
+ * of the session, so the commands of the transaction are executed in their original order, even if their markers are
+ * polled by different consumers or reordered by the queue.
+ * <p>
+ * The markers are bound to the session by their identity, which the SessionManager tracks until they are claimed.
+ * A producer entering a {@code Session (id)} line of its own doesn't get access to the mailbox of the session,
+ * as its line is not a marker issued by the session, it is rejected as an unknown command.
+ * <p>
+ * The transactions run on a dedicated connection of the session, which is opened by the first transaction
+ * and kept for the later ones, until the session is closed. Its users must synchronize on the session.
+ */
+public class Session {
+    @Getter
+    private final int id;
+
+    private final ArrayDeque<String> mailbox = new ArrayDeque<>();
+
+    private final SessionManager manager;
+
+    @Getter
+    private boolean aborted;
+
+    private Database database;
+
+    @Getter
+    private boolean inTransaction;
+
+    private long lastActiveNanos = System.nanoTime();
+
+    private UserRepository repository;
+
+    /**
+     * Constructs a new Session with the specified id.
+     *
+     * @param id      The unique id of the session.
+     * @param manager The manager of the session, providing its settings and counting its transactions.
+     */
+    Session(int id, SessionManager manager) {
+        this.id = id;
+        this.manager = manager;
+    }
+
+    /**
+     * Aborts the open transaction of the session by rolling it back.
+     * The transaction stays open in aborted state, rejecting its commands until it is committed or rolled back.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized void abort() throws SQLException {
+        aborted = true;
+        manager.countAborted();
+        database.rollback();
+    }
+
+    /**
+     * Begins a transaction on the dedicated connection of the session, opening the connection if needed.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized void begin() throws SQLException {
+        if (database == null) {
+            database = new Database(manager.getUrl());
+            repository = new UserRepository(database);
+        }
+        database.beginTransaction(manager.getIsolationLevel());
+        inTransaction = true;
+        aborted = false;
+        touch();
+    }
+
+    /**
+     * Closes the dedicated connection of the session, which rolls back its open transaction.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized void close() throws SQLException {
+        inTransaction = false;
+        aborted = false;
+        if (database != null) {
+            Database closed = database;
+            database = null;
+            repository = null;
+            closed.closeConnection();
+        }
+    }
+
+    /**
+     * Commits the open transaction of the session. If the commit fails, the transaction is rolled back.
+     * The transaction is ended in both cases.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized void commit() throws SQLException {
+        inTransaction = false;
+        try {
+            database.commit();
+            manager.countCommitted();
+        } catch (SQLException e) {
+            database.rollback();
+            manager.countRolledBack();
+            throw e;
+        }
+    }
+
+    /**
+     * Ends the transaction of the session, which was already rolled back when it was aborted.
+     */
+    public synchronized void endAborted() {
+        inTransaction = false;
+        aborted = false;
+    }
+
+    /**
+     * Checks if the open transaction of the session is abandoned: it has no pending commands,
+     * and it has not been active for longer than the given time.
+     *
+     * @param now          The current System.nanoTime() value.
+     * @param timeoutNanos The maximum time a transaction can stay inactive.
+     * @return True if the transaction is abandoned, false otherwise.
+     */
+    synchronized boolean isAbandoned(long now, long timeoutNanos) {
+        return inTransaction && !aborted && mailbox.isEmpty() && now - lastActiveNanos > timeoutNanos;
+    }
+
+    /**
+     * Removes the oldest pending command of the session and marks the session active.
+     *
+     * @return The oldest pending command line, or null if the session has no pending commands.
+     */
+    public synchronized String poll() {
+        touch();
+        return mailbox.poll();
+    }
+
+    /**
+     * Rolls back the open transaction of the session.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    public synchronized void rollback() throws SQLException {
+        inTransaction = false;
+        database.rollback();
+        manager.countRolledBack();
+    }
+
+    /**
+     * Puts a command line into the mailbox of the session.
+     *
+     * @param line The command line.
+     * @return The marker to be put into the shared command queue instead of the command line,
+     * a new string instance issued for this submission.
+     */
+    public synchronized String submit(String line) {
+        mailbox.add(line);
+        touch();
+        String marker = new String("Session (" + id + ")");
+        manager.issueMarker(marker, this);
+        return marker;
+    }
+
+    /**
+     * Removes the most recently submitted command line, which could not be put into the shared command queue,
+     * and revokes its marker.
+     *
+     * @param marker The marker returned for the command line by the submit method.
+     */
+    public synchronized void unsubmit(String marker) {
+        mailbox.pollLast();
+        manager.claim(marker);
+    }
+
+    /**
+     * Gets the repository used by the commands of the session, the transactional one during a transaction,
+     * or the given shared repository otherwise.
+     *
+     * @param shared The shared repository.
+     * @return The repository to be used by the commands of the session.
+     */
+    public synchronized Repository<User, UserMapper> getRepository(Repository<User, UserMapper> shared) {
+        return inTransaction ? repository : shared;
+    }
+
+    /**
+     * Marks the session active, delaying the abort of its transaction.
+     */
+    public synchronized void touch() {
+        lastActiveNanos = System.nanoTime();
+    }
+}
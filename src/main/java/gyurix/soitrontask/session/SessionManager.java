@@ -0,0 +1,219 @@
+package gyurix.soitrontask.session;
+
+import gyurix.soitrontask.LogSink;
+import lombok.Getter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SessionManager class creates the sessions of the producers, holds the transaction settings shared by them,
+ * and aborts the abandoned transactions.
+ * <p>
+ * A transaction is abandoned if it has no pending commands and its session was inactive for longer than the timeout,
+ * e.g. because its producer stopped without committing it. Abandoned transactions are rolled back by a background
+ * thread, so they don't hold their locks forever.
+ * <p>
+ * The manager also tracks the session markers in the command queue by their identity, so only the markers issued
+ * by the sessions can be claimed by the consumers. Closing the manager closes the connections of its sessions.
+ */
+public class SessionManager implements AutoCloseable {
+    private final AtomicLong abortedCount = new AtomicLong();
+
+    private final AtomicLong committedCount = new AtomicLong();
+
+    @Getter
+    private final int isolationLevel;
+
+    private final Map<String, Session> markers = new IdentityHashMap<>();
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    private final ScheduledExecutorService reaper;
+
+    private final AtomicLong rolledBackCount = new AtomicLong();
+
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+
+    private final long timeoutNanos;
+
+    @Getter
+    private final String url;
+
+    /**
+     * Constructs a new SessionManager with the specified transaction settings.
+     *
+     * @param url            The JDBC URL of the database, the sessions open their dedicated connections to it.
+     * @param isolationLevel The isolation level of the transactions, one of the Connection.TRANSACTION_* constants.
+     * @param timeoutMillis  The time in milliseconds after which the inactive transactions are aborted.
+     */
+    public SessionManager(String url, int isolationLevel, long timeoutMillis) {
+        this.url = url;
+        this.isolationLevel = isolationLevel;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(timeoutMillis / 4, 10);
+        reaper.scheduleWithFixedDelay(this::abortAbandonedTransactions, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Parses the name of a transaction isolation level.
+     *
+     * @param name The case-insensitive name of the isolation level, e.g. read_committed or serializable.
+     * @return The matching Connection.TRANSACTION_* constant.
+     * @throws IllegalArgumentException if the isolation level is not supported.
+     */
+    public static int parseIsolationLevel(String name) {
+        return switch (name.toLowerCase()) {
+            case "read_uncommitted" -> Connection.TRANSACTION_READ_UNCOMMITTED;
+            case "read_committed" -> Connection.TRANSACTION_READ_COMMITTED;
+            case "repeatable_read" -> Connection.TRANSACTION_REPEATABLE_READ;
+            case "serializable" -> Connection.TRANSACTION_SERIALIZABLE;
+            default -> throw new IllegalArgumentException("Unsupported isolation level " + name);
+        };
+    }
+
+    /**
+     * Aborts the abandoned transactions of all the sessions.
+     */
+    public void abortAbandonedTransactions() {
+        long now = System.nanoTime();
+        for (Session session : sessions.values()) {
+            synchronized (session) {
+                if (!session.isAbandoned(now, timeoutNanos)) {
+                    continue;
+                }
+                try {
+                    session.abort();
+                    LogSink.CONSOLE.log("Aborted the abandoned transaction of session " + session.getId(), true);
+                } catch (SQLException e) {
+                    LogSink.CONSOLE.log("Failed to abort the transaction of session " + session.getId() + ": " +
+                            e.getMessage(), true);
+                }
+            }
+        }
+    }
+
+    /**
+     * Claims a session marker polled from the command queue, so it can't be claimed again.
+     *
+     * @param marker The session marker, the same instance which was issued by the session.
+     * @return The session which issued the marker, or null if the line is not an issued marker.
+     */
+    public Session claim(String marker) {
+        synchronized (markers) {
+            return markers.remove(marker);
+        }
+    }
+
+    /**
+     * Stops aborting the abandoned transactions and closes the connections of the sessions,
+     * rolling back their open transactions.
+     */
+    @Override
+    public void close() {
+        reaper.shutdownNow();
+        for (Session session : sessions.values()) {
+            try {
+                session.close();
+            } catch (SQLException e) {
+                LogSink.CONSOLE.log("Failed to close the connection of session " + session.getId() + ": " +
+                        e.getMessage(), true);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of the transactions aborted by their timeout.
+     *
+     * @return The number of the aborted transactions.
+     */
+    public long getAbortedCount() {
+        return abortedCount.get();
+    }
+
+    /**
+     * Gets the number of the committed transactions.
+     *
+     * @return The number of the committed transactions.
+     */
+    public long getCommittedCount() {
+        return committedCount.get();
+    }
+
+    /**
+     * Gets the number of the rolled back transactions, including the ones failed to commit.
+     *
+     * @return The number of the rolled back transactions.
+     */
+    public long getRolledBackCount() {
+        return rolledBackCount.get();
+    }
+
+    /**
+     * Gets a human-readable summary of the transactions.
+     *
+     * @return The summary of the transaction statistics.
+     */
+    public String getStats() {
+        return "Transactions: committed: " + getCommittedCount() + ", rolled back: " + getRolledBackCount() +
+                ", aborted: " + getAbortedCount();
+    }
+
+    /**
+     * Registers a session marker issued by a session.
+     *
+     * @param marker  The issued marker.
+     * @param session The session issuing the marker.
+     */
+    void issueMarker(String marker, Session session) {
+        synchronized (markers) {
+            markers.put(marker, session);
+        }
+    }
+
+    /**
+     * Opens a new session for a producer.
+     *
+     * @return The opened session.
+     */
+    public Session open() {
+        int id = nextId.incrementAndGet();
+        Session session = new Session(id, this);
+        sessions.put(id, session);
+        return session;
+    }
+
+    /**
+     * Counts an aborted transaction.
+     */
+    void countAborted() {
+        abortedCount.incrementAndGet();
+    }
+
+    /**
+     * Counts a committed transaction.
+     */
+    void countCommitted() {
+        committedCount.incrementAndGet();
+    }
+
+    /**
+     * Counts a rolled back transaction.
+     */
+    void countRolledBack() {
+        rolledBackCount.incrementAndGet();
+    }
+}
@@ -0,0 +1,111 @@
+package gyurix.soitrontask.shard;
+
+import gyurix.soitrontask.db.entity.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The ShardProtocol class defines the binary protocol between the router and the shard servers.
+ * <p>
+ * Each request is an opcode byte followed by its arguments, and each response is a status byte followed by
+ * the result of the request, or by the error message for the {@link #STATUS_ERROR} status.
+ * The users are written as their id followed by their nullable guid and name.
+ * <ul>
+ *     <li>{@link #ADD}, {@link #ADD_IF_ABSENT}, {@link #UPSERT}: a user, answered by a boolean for ADD_IF_ABSENT
+ *     and by nothing for the others</li>
+ *     <li>{@link #DELETE_ALL}: no arguments, answered by the number of the deleted users</li>
+ *     <li>{@link #GET_ALL}: no arguments, answered by the number of the users followed by the users in id order</li>
+ * </ul>
+ */
+public final class ShardProtocol {
+    /**
+     * Adds a user, failing if a user with the same id exists.
+     */
+    public static final byte ADD = 1;
+
+    /**
+     * Adds a user, unless a user with the same id exists.
+     */
+    public static final byte ADD_IF_ABSENT = 2;
+
+    /**
+     * Deletes all the users of the shard.
+     */
+    public static final byte DELETE_ALL = 3;
+
+    /**
+     * Lists all the users of the shard in id order.
+     */
+    public static final byte GET_ALL = 4;
+
+    /**
+     * Adds a user or replaces the user with the same id.
+     */
+    public static final byte UPSERT = 5;
+
+    /**
+     * The status of a failed request, followed by the error message.
+     */
+    public static final byte STATUS_ERROR = 1;
+
+    /**
+     * The status of a successful request, followed by its result.
+     */
+    public static final byte STATUS_OK = 0;
+
+    private ShardProtocol() {
+    }
+
+    /**
+     * Reads a nullable string.
+     *
+     * @param in The input of the connection.
+     * @return The read string, or null.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    /**
+     * Reads a user.
+     *
+     * @param in The input of the connection.
+     * @return The read user.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static User readUser(DataInput in) throws IOException {
+        int id = in.readInt();
+        String guid = readString(in);
+        return new User(id, guid, readString(in));
+    }
+
+    /**
+     * Writes a nullable string.
+     *
+     * @param out   The output of the connection.
+     * @param value The string to be written, or null.
+     * @throws IOException if an I/O error occurs.
+     */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    /**
+     * Writes a user.
+     *
+     * @param out  The output of the connection.
+     * @param user The user to be written.
+     * @throws IOException if an I/O error occurs.
+     */
+    public static void writeUser(DataOutput out, User user) throws IOException {
+        out.writeInt(user.getId());
+        writeString(out, user.getGuid());
+        writeString(out, user.getName());
+    }
+}
@@ -0,0 +1,182 @@
+package gyurix.soitrontask.shard;
+
+import gyurix.soitrontask.LogSink;
+import gyurix.soitrontask.SoitronTaskMain;
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.mapper.UserMapper;
+import gyurix.soitrontask.db.repository.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The ShardServer class is a worker process of the sharded deployment, owning a shard of the user id space
+ * with its own user repository. It serves the requests of the router over local sockets, using the
+ * {@link ShardProtocol}.
+ * <p>
+ * Each connection of the router is served by its own thread, so the router can keep several requests in flight
+ * by using several connections. The server only listens on the loopback address.
+ */
+public class ShardServer implements Runnable, AutoCloseable {
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    private final Repository<User, UserMapper> repository;
+
+    private final ServerSocket serverSocket;
+
+    /**
+     * Constructs a new ShardServer listening on the specified port.
+     *
+     * @param port       The port of the server, or 0 for choosing a free port.
+     * @param repository The repository of the users of the shard.
+     * @throws IOException if the server socket can't be opened.
+     */
+    public ShardServer(int port, Repository<User, UserMapper> repository) throws IOException {
+        this.repository = repository;
+        serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+    }
+
+    /**
+     * The entry point of a shard server process.
+     * <p>
+     * Supported options:
+     * <ul>
+     *     <li>--port=...: The port of the server, a free port is chosen if not specified</li>
+     *     <li>--storage=..., --url=..., ...: The storage options of the shard, see SoitronTaskMain</li>
+     * </ul>
+     * The chosen port is printed once the server is ready to accept connections.
+     *
+     * @param args The command-line arguments in --name=value format.
+     * @throws IOException if the server socket can't be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = SoitronTaskMain.parseOptions(args);
+        ShardServer server = new ShardServer(Integer.parseInt(options.getOrDefault("port", "0")),
+                SoitronTaskMain.createUserRepository(options));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+        System.out.println("Shard server listening on port " + server.getPort());
+        new Thread(server, "shard-server").start();
+    }
+
+    /**
+     * Stops accepting new connections.
+     */
+    @Override
+    public void close() {
+        try {
+            serverSocket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Executes a request of the router and writes its response.
+     *
+     * @param opcode The opcode of the request.
+     * @param in     The input of the connection, positioned after the opcode.
+     * @param out    The output of the connection.
+     * @throws IOException if an I/O error occurs.
+     */
+    private void execute(byte opcode, DataInputStream in, DataOutputStream out) throws IOException {
+        User user = opcode == ShardProtocol.ADD || opcode == ShardProtocol.ADD_IF_ABSENT ||
+                opcode == ShardProtocol.UPSERT ? ShardProtocol.readUser(in) : null;
+        try {
+            switch (opcode) {
+                case ShardProtocol.ADD -> {
+                    repository.add(user);
+                    out.writeByte(ShardProtocol.STATUS_OK);
+                }
+                case ShardProtocol.ADD_IF_ABSENT -> {
+                    boolean added = repository.addIfAbsent(user);
+                    out.writeByte(ShardProtocol.STATUS_OK);
+                    out.writeBoolean(added);
+                }
+                case ShardProtocol.DELETE_ALL -> {
+                    int count = repository.deleteAll();
+                    out.writeByte(ShardProtocol.STATUS_OK);
+                    out.writeInt(count);
+                }
+                case ShardProtocol.GET_ALL -> {
+                    List<User> users = new ArrayList<>(repository.getAll());
+                    users.sort(Comparator.comparingInt(User::getId));
+                    out.writeByte(ShardProtocol.STATUS_OK);
+                    out.writeInt(users.size());
+                    for (User listed : users) {
+                        ShardProtocol.writeUser(out, listed);
+                    }
+                }
+                case ShardProtocol.UPSERT -> {
+                    repository.upsert(user);
+                    out.writeByte(ShardProtocol.STATUS_OK);
+                }
+                default -> throw new IOException("Unknown opcode " + opcode);
+            }
+        } catch (SQLException | RuntimeException e) {
+            out.writeByte(ShardProtocol.STATUS_ERROR);
+            out.writeUTF(e.getClass().getSimpleName() + " - " + e.getMessage());
+        }
+        out.flush();
+    }
+
+    /**
+     * Gets the port of the server.
+     *
+     * @return The port on which the server is listening.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Serves the requests of a connection until it is closed by the router.
+     *
+     * @param socket The socket of the connection.
+     */
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                execute(in.readByte(), in, out);
+            }
+        } catch (EOFException | SocketException ignored) {
+        } catch (IOException e) {
+            LogSink.CONSOLE.log("Connection failed: " + e.getMessage(), true);
+        }
+    }
+
+    /**
+     * Accepts the connections of the router until the server is closed, serving each of them on a new thread.
+     */
+    @Override
+    public void run() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread thread = new Thread(() -> serve(socket),
+                        "shard-connection-" + connectionCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    LogSink.CONSOLE.log("Failed to accept a connection: " + e.getMessage(), true);
+                }
+            }
+        }
+    }
+}
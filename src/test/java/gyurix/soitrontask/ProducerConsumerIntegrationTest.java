@@ -15,10 +15,13 @@ import java.util.List;
 import java.util.Queue;
 import java.util.Random;
 import java.util.Scanner;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * This test class validates the functionality of the producer-consumer system
@@ -28,6 +31,16 @@ import static org.junit.Assert.assertEquals;
  * to ensure the system handles concurrent execution correctly.
  */
 public class ProducerConsumerIntegrationTest {
+    /**
+     * The number of commands in the input for each input multiplier.
+     */
+    private static final int COMMANDS_PER_INPUT = 5;
+
+    /**
+     * The maximum time to wait for the execution of all the commands.
+     */
+    private static final long TIMEOUT_SECONDS = 30;
+
     /**
      * Queue to hold commands.
      */
@@ -69,25 +82,32 @@ public class ProducerConsumerIntegrationTest {
 
     /**
      * Simulates the execution of producers and consumers and collects the sorted logs.
+     * The consumers are stopped once all the commands have been executed, which is tracked by a latch
+     * counted down by their completion listeners.
      *
      * @param consumerCount The number of consumers.
      * @param producerCount The number of producers.
      * @param input         The input commands for producers.
+     * @param commandCount  The number of commands in the input.
      * @param errorLogs     Flag indicating whether to collect error logs or normal logs.
      * @return The sorted log lines.
-     * @throws InterruptedException If the thread sleep is interrupted.
+     * @throws InterruptedException If the waiting for the commands is interrupted.
      */
     private static List<String> simulateAndCollectSortedLogs(
             int consumerCount,
             int producerCount,
             Scanner input,
+            int commandCount,
             boolean errorLogs) throws InterruptedException {
         List<CommandExecutor> consumers = new ArrayList<>();
         List<Producer> producers = new ArrayList<>();
+        CountDownLatch completed = new CountDownLatch(commandCount);
 
         // Create and start consumers
         for (int i = 0; i < consumerCount; i++) {
-            consumers.add(new CommandExecutor(commandQueue, userRepository));
+            CommandExecutor consumer = new CommandExecutor(commandQueue, userRepository);
+            consumer.setCompletionListener((command, success) -> completed.countDown());
+            consumers.add(consumer);
         }
 
         // Create and start producers
@@ -104,8 +124,8 @@ public class ProducerConsumerIntegrationTest {
             threadPool.submit(producer);
         }
 
-        // Wait for a short duration to allow execution
-        Thread.sleep(50);
+        // Wait for the execution of all the commands
+        assertTrue("Commands were not executed in time", completed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
 
         // Stop consumers
         for (CommandExecutor consumer : consumers) {
@@ -187,7 +207,7 @@ public class ProducerConsumerIntegrationTest {
     /**
      * Test case for log output with multiple producers and a single consumer.
      *
-     * @throws InterruptedException If the thread sleep is interrupted.
+     * @throws InterruptedException If the waiting for the commands is interrupted.
      */
     @Test
     public void testLogOutputMultiProducerSingleConsumer() throws InterruptedException {
@@ -197,7 +217,8 @@ public class ProducerConsumerIntegrationTest {
             for (int producerCount : new int[]{1, 2, 3, 5, 10}) {
                 String params = getAndLogTestParams(inputMultiplier, consumerCount, producerCount);
                 Scanner input = getInput(inputMultiplier);
-                List<String> logLines = simulateAndCollectSortedLogs(consumerCount, producerCount, input, false);
+                List<String> logLines = simulateAndCollectSortedLogs(consumerCount, producerCount, input,
+                        inputMultiplier * COMMANDS_PER_INPUT, false);
                 assertEquals(expectedOutput, logLines);
                 System.out.println("Passed test with " + params);
             }
@@ -207,7 +228,7 @@ public class ProducerConsumerIntegrationTest {
     /**
      * Test case for no errors with multiple producers, multiple consumers, and random user IDs.
      *
-     * @throws InterruptedException If the thread sleep is interrupted.
+     * @throws InterruptedException If the waiting for the commands is interrupted.
      */
     @Test
     public void testNoErrorsMultiProducerMultiConsumerRandomUserId() throws InterruptedException {
@@ -216,7 +237,8 @@ public class ProducerConsumerIntegrationTest {
                 for (int producerCount : new int[]{1, 2, 3, 5, 10}) {
                     String params = getAndLogTestParams(inputMultiplier, consumerCount, producerCount);
                     Scanner input = getInputWithRandomId(inputMultiplier);
-                    List<String> logLines = simulateAndCollectSortedLogs(consumerCount, producerCount, input, true);
+                    List<String> logLines = simulateAndCollectSortedLogs(consumerCount, producerCount, input,
+                            inputMultiplier * COMMANDS_PER_INPUT, true);
                     assertEquals(List.of(), logLines);
                     System.out.println("Passed test with " + params);
                 }
@@ -0,0 +1,83 @@
+package gyurix.soitrontask.command;
+
+import gyurix.soitrontask.command.CommandCoalescer.Action;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static gyurix.soitrontask.command.CommandCoalescer.Action.EMPTY_PRINT_ALL;
+import static gyurix.soitrontask.command.CommandCoalescer.Action.EXECUTE;
+import static gyurix.soitrontask.command.CommandCoalescer.Action.REPEAT_PRINT_ALL;
+import static gyurix.soitrontask.command.CommandCoalescer.Action.SKIP_ADD;
+import static gyurix.soitrontask.command.CommandCoalescer.Action.SKIP_DELETE_ALL;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Unit test for CommandCoalescer class.
+ */
+public class CommandCoalescerTest {
+    /**
+     * Plans the given command lines and returns the planned actions.
+     *
+     * @param coalescer The coalescer to be used.
+     * @param lines     The command lines.
+     * @return The planned actions in the order of the commands.
+     */
+    private static List<Action> plan(CommandCoalescer coalescer, String... lines) {
+        List<Command> window = new ArrayList<>();
+        for (String line : lines) {
+            window.add(new Command(line));
+        }
+        List<Action> actions = new ArrayList<>();
+        for (CommandCoalescer.Step step : coalescer.coalesce(window)) {
+            actions.add(step.action());
+        }
+        return actions;
+    }
+
+    /**
+     * Test that the adds wiped by a DeleteAll on a known empty repository are skipped,
+     * together with the redundant DeleteAll and the reads of the empty repository.
+     */
+    @Test
+    public void testWipedAddsAndEmptyReads() {
+        CommandCoalescer coalescer = new CommandCoalescer(16);
+        assertEquals(List.of(EXECUTE, EMPTY_PRINT_ALL, SKIP_ADD, SKIP_ADD, SKIP_DELETE_ALL, EMPTY_PRINT_ALL),
+                plan(coalescer, "DeleteAll", "PrintAll", "Add (1, a1, Robert)", "Add (2, a2, Martin)",
+                        "DeleteAll", "PrintAll"));
+        assertEquals(5, coalescer.getEliminatedCount());
+        assertEquals(6, coalescer.getProcessedCount());
+    }
+
+    /**
+     * Test that adds are never skipped if they could fail or if they are read before being wiped.
+     */
+    @Test
+    public void testUnsafeAddsAreExecuted() {
+        CommandCoalescer coalescer = new CommandCoalescer(16);
+        assertEquals(List.of(EXECUTE, EXECUTE, EXECUTE),
+                plan(coalescer, "Add (1, a1, Robert)", "DeleteAll", "DeleteAll2"));
+        assertEquals(List.of(EXECUTE, EXECUTE, EXECUTE, EXECUTE),
+                plan(coalescer, "DeleteAll", "Add (1, a1, Robert)", "Add (1, a2, Martin)", "DeleteAll"));
+        assertEquals(List.of(EXECUTE, EXECUTE, EXECUTE, EXECUTE),
+                plan(coalescer, "DeleteAll", "Add (1, a1, Robert)", "PrintAll", "DeleteAll"));
+        assertEquals(List.of(EXECUTE, EXECUTE, EXECUTE),
+                plan(coalescer, "DeleteAll", "Add (invalid)", "DeleteAll"));
+        assertEquals(List.of(EXECUTE, EXECUTE, EXECUTE),
+                plan(coalescer, "DeleteAll", "Add (1, a1, " + "\uD83D\uDE00".repeat(30) + ")", "DeleteAll"));
+    }
+
+    /**
+     * Test that consecutive reads without writes between them are answered once.
+     */
+    @Test
+    public void testRepeatedReads() {
+        CommandCoalescer coalescer = new CommandCoalescer(16);
+        assertEquals(List.of(EXECUTE, EXECUTE, REPEAT_PRINT_ALL, REPEAT_PRINT_ALL, EXECUTE, EXECUTE),
+                plan(coalescer, "PrintAll", "Help", "PrintAll", "PrintAll", "Add (1, a1, Robert)", "PrintAll"));
+        assertEquals(List.of(EXECUTE, EXECUTE, EXECUTE, EXECUTE, EXECUTE, EXECUTE),
+                plan(coalescer, "DeleteAll", "Upsert (1, a1, Robert)", "PrintAll", "AddIfAbsent (2, a2, Martin)",
+                        "PrintAll", "DeleteAll"));
+    }
+}
@@ -0,0 +1,62 @@
+package gyurix.soitrontask.command;
+
+import gyurix.soitrontask.db.entity.User;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test for CommandValidator class.
+ */
+public class CommandValidatorTest {
+    /**
+     * Validates a command line.
+     *
+     * @param line The command line.
+     * @return The error of the command, or null if it is valid.
+     */
+    private static CommandError validate(String line) {
+        return CommandValidator.validate(new Command(line));
+    }
+
+    /**
+     * Test that the valid commands are accepted and their users can be parsed.
+     */
+    @Test
+    public void testValidCommands() {
+        assertNull(validate("Add (1, \"a1\", \"Robert\")"));
+        assertNull(validate("upsert (-5, a, b)"));
+        assertNull(validate("AddIfAbsent(+2147483647, a, b, extra)"));
+        assertNull(validate("PrintAll"));
+        assertEquals(new User(1, "a1", "Robert"), new User(new Command("Add (1, \"a1\", \"Robert\")").getArgs()));
+    }
+
+    /**
+     * Test that the malformed commands are rejected with the code and the position of their errors.
+     */
+    @Test
+    public void testMalformedCommands() {
+        assertEquals(new CommandError(CommandError.Code.UNKNOWN_COMMAND, 0), validate("Remove (1)"));
+        assertEquals(new CommandError(CommandError.Code.MISSING_ARGUMENTS, 3), validate("Add"));
+        assertEquals(new CommandError(CommandError.Code.MISSING_ARGUMENTS, 9), validate("Add (1, a)"));
+        assertEquals(new CommandError(CommandError.Code.INVALID_ID, 5), validate("Add (x1, a, b)"));
+        assertEquals(new CommandError(CommandError.Code.INVALID_ID, 5), validate("Add (2147483648, a, b)"));
+        assertEquals(new CommandError(CommandError.Code.VALUE_TOO_LONG, 11),
+                validate("Upsert (1, " + "g".repeat(51) + ", b)"));
+    }
+
+    /**
+     * Test that the value length is counted in UTF-16 chars like by the H2 VARCHAR columns,
+     * so a supplementary character takes two of the allowed chars.
+     */
+    @Test
+    public void testSurrogatePairValueLength() {
+        String emoji = "\uD83D\uDE00";
+        assertNull(validate("Add (1, a, " + emoji.repeat(25) + ")"));
+        assertEquals(new CommandError(CommandError.Code.VALUE_TOO_LONG, 8),
+                validate("Add (1, " + emoji.repeat(26) + ", b)"));
+        assertEquals(new CommandError(CommandError.Code.VALUE_TOO_LONG, 11),
+                validate("Add (1, a, " + emoji.repeat(30) + ")"));
+    }
+}
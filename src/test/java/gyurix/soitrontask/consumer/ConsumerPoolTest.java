@@ -0,0 +1,104 @@
+package gyurix.soitrontask.consumer;
+
+import gyurix.soitrontask.command.CommandType;
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.repository.OffHeapUserRepository;
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for ConsumerPool class.
+ */
+public class ConsumerPoolTest {
+    private ConsumerPool pool;
+
+    /**
+     * Waits until the given condition becomes true.
+     *
+     * @param condition     The condition to wait for.
+     * @param timeoutMillis The maximum time to wait in milliseconds.
+     * @return True if the condition became true, false if the timeout expired.
+     * @throws InterruptedException if the waiting is interrupted.
+     */
+    private static boolean await(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        return true;
+    }
+
+    /**
+     * Clean up the test environment after each test case.
+     */
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.stop();
+        }
+    }
+
+    /**
+     * Test that the pool grows under a burst of slow commands, executes every command exactly once,
+     * then shrinks back to its minimum size once the consumers become idle, removing the retired consumers
+     * but keeping their error counters.
+     *
+     * @throws InterruptedException if the waiting is interrupted.
+     */
+    @Test
+    public void testScaleUpAndDown() throws InterruptedException {
+        OffHeapUserRepository repository = new OffHeapUserRepository() {
+            @Override
+            public void add(User user) throws SQLException {
+                try {
+                    TimeUnit.MILLISECONDS.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.add(user);
+            }
+        };
+        Queue<String> queue = new LinkedList<>();
+        int commandCount = 1000;
+        synchronized (queue) {
+            for (int i = 0; i < commandCount; ++i) {
+                queue.add("Add (" + i + ", a" + i + ", User" + i + ")");
+                if (i % 100 == 0) {
+                    queue.add("Remove (" + i + ")");
+                }
+            }
+        }
+        AtomicInteger added = new AtomicInteger();
+        pool = new ConsumerPool(queue, () -> {
+            CommandExecutor consumer = new CommandExecutor(queue, repository);
+            consumer.setCompletionListener((command, success) -> {
+                if (success && command.getType() == CommandType.ADD) {
+                    added.incrementAndGet();
+                }
+            });
+            return consumer;
+        }, new ConsumerPool.Settings(1, 4, 50, 100, 10, 2));
+        new Thread(pool).start();
+
+        assertTrue(await(() -> pool.getPeakSize() == 4, 5000));
+        assertTrue(await(() -> repository.getAll().size() == commandCount, 10000));
+        assertTrue(await(() -> pool.getSize() == 1, 5000));
+        assertTrue(await(() -> pool.getConsumers().size() == 1, 5000));
+
+        assertEquals(commandCount, added.get());
+        assertTrue(pool.getErrorStats(), pool.getErrorStats().contains("UNKNOWN_COMMAND: 10 "));
+    }
+}
@@ -0,0 +1,86 @@
+package gyurix.soitrontask.db;
+
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.mapper.UserMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for the precompiled queries and updates of the Database class.
+ */
+public class DatabaseTest {
+    private Database database;
+
+    /**
+     * Set up the test environment before each test case.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Before
+    public void setup() throws SQLException {
+        database = new Database("jdbc:h2:mem:databasetest");
+        try (Update<Void> createTable = database.prepareUpdate("CREATE TABLE SUSERS (ID INT PRIMARY KEY, GUID VARCHAR(50), NAME VARCHAR(50))")) {
+            createTable.execute();
+        }
+    }
+
+    /**
+     * Clean up the test environment after each test case.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @After
+    public void tearDown() throws SQLException {
+        database.closeConnection();
+    }
+
+    /**
+     * Test reusing precompiled queries and updates with entity and primitive parameters.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testPreparedQueryAndUpdate() throws SQLException {
+        UserMapper mapper = new UserMapper();
+        Update<User> insert = database.prepareUpdate("INSERT INTO SUSERS (ID, GUID, NAME) VALUES (?, ?, ?)", mapper);
+        Update<Void> delete = database.prepareUpdate("DELETE FROM SUSERS WHERE ID < ?");
+        Query<User> range = database.prepareQuery("SELECT * FROM SUSERS WHERE ID BETWEEN ? AND ? ORDER BY ID", mapper);
+
+        for (int id = 1; id <= 5; ++id) {
+            assertEquals(1, insert.execute(new User(id, "a" + id, "User" + id)));
+        }
+
+        assertEquals(List.of(new User(2, "a2", "User2"), new User(3, "a3", "User3")), range.list(2, 3));
+        assertEquals(2, delete.execute(3));
+        assertEquals(List.of(new User(3, "a3", "User3")), range.list(2, 3));
+    }
+
+    /**
+     * Test that an update without parameter mapper rejects entity parameters, and that the precompiled statements
+     * are closed together with the connection.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testMisuseAndClose() throws SQLException {
+        Update<Void> deleteAll = database.prepareUpdate("DELETE FROM SUSERS");
+        Query<User> all = database.prepareQuery("SELECT * FROM SUSERS", new UserMapper());
+
+        assertThrows(IllegalStateException.class, () -> deleteAll.execute((Void) null));
+        assertFalse(deleteAll.isClosed());
+        assertFalse(all.isClosed());
+
+        database.closeConnection();
+        assertTrue(deleteAll.isClosed());
+        assertTrue(all.isClosed());
+    }
+}
@@ -0,0 +1,101 @@
+package gyurix.soitrontask.db.mapper.processor;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import org.junit.Test;
+
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static com.google.testing.compile.Compiler.javac;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for MapperProcessor class, compiling entities with the processor.
+ */
+public class MapperProcessorTest {
+    /**
+     * Compiles the given entity source with the MapperProcessor.
+     *
+     * @param source The lines of the source of the gyurix.test.Entity class.
+     * @return The result of the compilation.
+     */
+    private static Compilation compile(String... source) {
+        JavaFileObject entity = JavaFileObjects.forSourceLines("gyurix.test.Entity", source);
+        return javac().withProcessors(new MapperProcessor()).compile(entity);
+    }
+
+    /**
+     * Test that the generated mapper binds and reads the columns in the order of their indexes.
+     *
+     * @throws IOException if the generated source can't be read.
+     */
+    @Test
+    public void testGeneratedMapper() throws IOException {
+        Compilation compilation = compile(
+                "package gyurix.test;",
+                "import gyurix.soitrontask.db.mapper.annotation.Column;",
+                "import gyurix.soitrontask.db.mapper.annotation.GenerateMapper;",
+                "@GenerateMapper(packageName = \"gyurix.test.mapper\")",
+                "public class Entity {",
+                "    @Column(2) private String name;",
+                "    @Column(1) private long id;",
+                "    @Column(3) private boolean active;",
+                "    public long getId() { return id; }",
+                "    public void setId(long id) { this.id = id; }",
+                "    public String getName() { return name; }",
+                "    public void setName(String name) { this.name = name; }",
+                "    public boolean isActive() { return active; }",
+                "    public void setActive(boolean active) { this.active = active; }",
+                "}");
+
+        assertThat(compilation).succeededWithoutWarnings();
+        String mapper = compilation.generatedSourceFile("gyurix.test.mapper.EntityMapper").orElseThrow()
+                .getCharContent(false).toString();
+        assertTrue(mapper, mapper.contains("import gyurix.soitrontask.db.mapper.DTOMapper;"));
+        assertTrue(mapper, mapper.contains("public class EntityMapper implements DTOMapper<Entity>"));
+        assertTrue(mapper, mapper.contains("statement.setLong(index, entity.getId());"));
+        assertTrue(mapper, mapper.contains("statement.setString(index + 1, entity.getName());"));
+        assertTrue(mapper, mapper.contains("statement.setBoolean(index + 2, entity.isActive());"));
+        assertTrue(mapper, mapper.contains("return 3;"));
+        assertTrue(mapper, mapper.contains("entity.setId(resultSet.getLong(1));"));
+        assertTrue(mapper, mapper.contains("entity.setName(resultSet.getString(2));"));
+        assertTrue(mapper, mapper.contains("entity.setActive(resultSet.getBoolean(3));"));
+    }
+
+    /**
+     * Test that the invalid column indexes and types are reported as compilation errors.
+     */
+    @Test
+    public void testInvalidColumns() {
+        Compilation compilation = compile(
+                "package gyurix.test;",
+                "import gyurix.soitrontask.db.mapper.annotation.Column;",
+                "import gyurix.soitrontask.db.mapper.annotation.GenerateMapper;",
+                "@GenerateMapper(packageName = \"gyurix.test\")",
+                "public class Entity {",
+                "    @Column(1) private int id;",
+                "    @Column(3) private String name;",
+                "    @Column(4) private Object value;",
+                "}");
+
+        assertThat(compilation).hadErrorContaining("Column indexes must be unique and continuous starting from 1");
+        assertThat(compilation).hadErrorContaining("Unsupported column type java.lang.Object");
+    }
+
+    /**
+     * Test that an entity without columns is reported as a compilation error.
+     */
+    @Test
+    public void testNoColumns() {
+        Compilation compilation = compile(
+                "package gyurix.test;",
+                "import gyurix.soitrontask.db.mapper.annotation.GenerateMapper;",
+                "@GenerateMapper(packageName = \"gyurix.test\")",
+                "public class Entity {",
+                "}");
+
+        assertThat(compilation).hadErrorContaining("@GenerateMapper entity Entity has no @Column fields");
+    }
+}
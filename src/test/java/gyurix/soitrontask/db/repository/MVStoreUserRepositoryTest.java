@@ -0,0 +1,114 @@
+package gyurix.soitrontask.db.repository;
+
+import gyurix.soitrontask.db.entity.User;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for MVStoreUserRepository class.
+ */
+public class MVStoreUserRepositoryTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private MVStoreUserRepository userRepository;
+
+    /**
+     * Set up the test environment before each test case.
+     */
+    @Before
+    public void setup() {
+        userRepository = new MVStoreUserRepository(MVStoreUserRepository.openStore(null, 1000, 1024, 90));
+    }
+
+    /**
+     * Clean up the test environment after each test case.
+     */
+    @After
+    public void tearDown() {
+        userRepository.close();
+    }
+
+    /**
+     * Test the add() and getAll() methods of MVStoreUserRepository, including listing the users in id order.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testAddAndGetAll() throws SQLException {
+        User user1 = new User(1, "a1", "Robert");
+        User user2 = new User(2, null, "Martin");
+        User user3 = new User(300, "a3", "x".repeat(500));
+
+        userRepository.add(user3);
+        userRepository.add(user1);
+        userRepository.add(user2);
+
+        assertEquals(List.of(user1, user2, user3), userRepository.getAll());
+        assertThrows(SQLException.class, () -> userRepository.add(new User(1, "a4", "Peter")));
+    }
+
+    /**
+     * Test the deleteAll() method of MVStoreUserRepository.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testDeleteAll() throws SQLException {
+        userRepository.add(new User(1, "a1", "Robert"));
+        userRepository.add(new User(2, "a2", "Martin"));
+
+        assertEquals(2, userRepository.deleteAll());
+
+        assertTrue(userRepository.getAll().isEmpty());
+    }
+
+    /**
+     * Test that the users of a file backed MVStoreUserRepository survive reopening the store.
+     *
+     * @throws IOException  if the temporary file could not be created.
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testFilePersistence() throws IOException, SQLException {
+        String fileName = temporaryFolder.newFile("users.mv.db").getAbsolutePath();
+        User user = new User(1, "a1", "Robert");
+
+        MVStoreUserRepository fileRepository = new MVStoreUserRepository(
+                MVStoreUserRepository.openStore(fileName, 0, 1024, 90));
+        fileRepository.add(user);
+        fileRepository.commit();
+        fileRepository.close();
+
+        fileRepository = new MVStoreUserRepository(MVStoreUserRepository.openStore(fileName, 0, 1024, 90));
+        assertEquals(List.of(user), fileRepository.getAll());
+        fileRepository.close();
+    }
+
+    /**
+     * Test the addIfAbsent() and upsert() methods of MVStoreUserRepository, which handle existing ids without exceptions.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testAddIfAbsentAndUpsert() throws SQLException {
+        assertTrue(userRepository.addIfAbsent(new User(1, "a1", "Robert")));
+        assertFalse(userRepository.addIfAbsent(new User(1, "a2", "Martin")));
+        userRepository.upsert(new User(2, "a2", "Martin"));
+        userRepository.upsert(new User(1, "b1", "Bob"));
+
+        assertEquals(List.of(new User(1, "b1", "Bob"), new User(2, "a2", "Martin")), userRepository.getAll());
+    }
+}
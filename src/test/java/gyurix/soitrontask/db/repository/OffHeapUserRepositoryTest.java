@@ -0,0 +1,138 @@
+package gyurix.soitrontask.db.repository;
+
+import gyurix.soitrontask.db.entity.User;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for OffHeapUserRepository class.
+ */
+public class OffHeapUserRepositoryTest {
+    private OffHeapUserRepository userRepository;
+
+    /**
+     * Set up the test environment before each test case.
+     */
+    @Before
+    public void setup() {
+        userRepository = new OffHeapUserRepository();
+    }
+
+    /**
+     * Test the add() and getAll() methods of OffHeapUserRepository.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testAddAndGetAll() throws SQLException {
+        User user1 = new User(1, "a1", "Robert");
+        User user2 = new User(2, "a2", "Martin");
+        User user3 = new User(3, null, "Árpád");
+
+        userRepository.add(user1);
+        userRepository.add(user2);
+        userRepository.add(user3);
+
+        assertEquals(List.of(user1, user2, user3), userRepository.getAll());
+    }
+
+    /**
+     * Test that adding a user with an already existing id fails.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testAddDuplicateId() throws SQLException {
+        userRepository.add(new User(1, "a1", "Robert"));
+        assertThrows(SQLException.class, () -> userRepository.add(new User(1, "a2", "Martin")));
+        assertEquals(1, userRepository.getAll().size());
+    }
+
+    /**
+     * Test the deleteAll() method of OffHeapUserRepository, including reusing the ids of the deleted users.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testDeleteAll() throws SQLException {
+        userRepository.add(new User(1, "a1", "Robert"));
+        userRepository.add(new User(2, "a2", "Martin"));
+
+        assertEquals(2, userRepository.deleteAll());
+        assertTrue(userRepository.getAll().isEmpty());
+
+        User user = new User(1, "a3", "Peter");
+        userRepository.add(user);
+        assertEquals(List.of(user), userRepository.getAll());
+    }
+
+    /**
+     * Test growing the off-heap storage beyond its initial capacity and iterating it with forEach().
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testGrowAndForEach() throws SQLException {
+        List<User> expected = new ArrayList<>();
+        for (int i = 0; i < 10000; ++i) {
+            User user = new User(i * 7, "guid-" + i, "name-" + i);
+            expected.add(user);
+            userRepository.add(user);
+        }
+        List<User> users = new ArrayList<>();
+        userRepository.forEach(users::add);
+        assertEquals(expected, users);
+        assertThrows(SQLException.class, () -> userRepository.add(new User(7 * 5000, "a", "b")));
+    }
+
+    /**
+     * Test the addIfAbsent() and upsert() methods of OffHeapUserRepository, which handle existing ids without exceptions.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testAddIfAbsentAndUpsert() throws SQLException {
+        assertTrue(userRepository.addIfAbsent(new User(1, "a1", "Robert")));
+        assertFalse(userRepository.addIfAbsent(new User(1, "a2", "Martin")));
+        userRepository.upsert(new User(2, "a2", "Martin"));
+        userRepository.upsert(new User(1, "b1", "Bob"));
+
+        assertEquals(List.of(new User(1, "b1", "Bob"), new User(2, "a2", "Martin")), userRepository.getAll());
+    }
+
+    /**
+     * Test that forEach doesn't lock the repository while its action runs, so a slow action doesn't stall the writers,
+     * and that it lists the users present when it started.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testForEachDoesNotBlockWriters() throws Exception {
+        userRepository.add(new User(1, "a1", "Robert"));
+        userRepository.add(new User(2, "a2", "Martin"));
+        List<User> users = new ArrayList<>();
+        userRepository.forEach(user -> {
+            if (users.isEmpty()) {
+                CompletableFuture.runAsync(() -> {
+                    userRepository.upsert(new User(1, "b1", "Changed"));
+                    userRepository.deleteAll();
+                    userRepository.addIfAbsent(new User(3, "a3", "Added"));
+                }).orTimeout(10, TimeUnit.SECONDS).join();
+            }
+            users.add(user);
+        });
+        assertEquals(List.of(new User(1, "a1", "Robert"), new User(2, "a2", "Martin")), users);
+        assertEquals(List.of(new User(3, "a3", "Added")), userRepository.getAll());
+    }
+}
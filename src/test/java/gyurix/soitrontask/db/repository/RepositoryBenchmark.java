@@ -0,0 +1,78 @@
+package gyurix.soitrontask.db.repository;
+
+import gyurix.soitrontask.db.Database;
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.mapper.UserMapper;
+
+import java.sql.SQLException;
+import java.util.function.Supplier;
+
+/**
+ * Side-by-side benchmark of the user repository implementations, showing the cost of the H2 SQL layer
+ * compared to the MVStore and the off-heap repositories, and the speedup of the parallel scan of the H2 SQL layer
+ * compared to its sequential scan.
+ * <p>
+ * It is not executed as a part of the test suite, run it manually with the number of users, the number of rounds
+ * and the number of scan partitions as arguments, e.g. {@code RepositoryBenchmark 500000 5 4}.
+ * The parallel scan only beats the sequential one on large tables and multiple cores.
+ */
+public class RepositoryBenchmark {
+    /**
+     * Runs the benchmark.
+     *
+     * @param args The number of users, the number of measured rounds and the number of scan partitions,
+     *             100000, 5 and the number of the available processors by default.
+     * @throws SQLException if a database access error occurs.
+     */
+    public static void main(String[] args) throws SQLException {
+        int userCount = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int scanPartitions = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        benchmark("h2 sql", () -> new UserRepository(new Database("jdbc:h2:mem:benchmark")), userCount, rounds);
+        benchmark("h2 x" + scanPartitions, () -> new UserRepository(new Database("jdbc:h2:mem:benchmark-scan"),
+                scanPartitions), userCount, rounds);
+        benchmark("mvstore", () -> new MVStoreUserRepository(MVStoreUserRepository.openStore(null, 1000, 1024, 90)),
+                userCount, rounds);
+        benchmark("offheap", OffHeapUserRepository::new, userCount, rounds);
+    }
+
+    /**
+     * Benchmarks a repository implementation and prints the average duration of its operations.
+     * The first round is used for warming up and is not measured.
+     *
+     * @param name       The name of the implementation.
+     * @param factory    The factory creating the repository.
+     * @param userCount  The number of users added in each round.
+     * @param rounds     The number of measured rounds.
+     * @throws SQLException if a database access error occurs.
+     */
+    private static void benchmark(String name, Supplier<Repository<User, UserMapper>> factory,
+                                  int userCount, int rounds) throws SQLException {
+        Repository<User, UserMapper> repository = factory.get();
+        long addNanos = 0, scanNanos = 0, deleteNanos = 0;
+        for (int round = 0; round <= rounds; ++round) {
+            long start = System.nanoTime();
+            for (int i = 0; i < userCount; ++i) {
+                repository.add(new User(i, "guid-" + i, "name-" + i));
+            }
+            long added = System.nanoTime();
+            int[] scanned = new int[1];
+            repository.forEach(user -> ++scanned[0]);
+            long scanEnd = System.nanoTime();
+            repository.deleteAll();
+            long deleted = System.nanoTime();
+            if (scanned[0] != userCount) {
+                throw new IllegalStateException(name + " returned " + scanned[0] + " users instead of " + userCount);
+            }
+            if (round > 0) {
+                addNanos += added - start;
+                scanNanos += scanEnd - added;
+                deleteNanos += deleted - scanEnd;
+            }
+        }
+        System.out.printf("%-8s add: %8.1f ns/user, scan: %8.1f ns/user, deleteAll: %10.3f ms%n", name,
+                (double) addNanos / rounds / userCount,
+                (double) scanNanos / rounds / userCount,
+                deleteNanos / rounds / 1e6);
+    }
+}
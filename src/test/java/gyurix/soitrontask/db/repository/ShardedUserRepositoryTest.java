@@ -0,0 +1,220 @@
+package gyurix.soitrontask.db.repository;
+
+import gyurix.soitrontask.db.Database;
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.shard.ShardServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for ShardedUserRepository class, with in-process and with separate ShardServer processes.
+ */
+public class ShardedUserRepositoryTest {
+    /**
+     * The number of the shards.
+     */
+    private static final int SHARD_COUNT = 3;
+
+    private final List<Database> databases = new ArrayList<>();
+
+    private final List<Process> processes = new ArrayList<>();
+
+    private final List<ShardServer> servers = new ArrayList<>();
+
+    private ShardedUserRepository userRepository;
+
+    /**
+     * Set up the test environment before each test case, starting in-process shard servers,
+     * each of them having its own database.
+     *
+     * @throws IOException if a shard server can't be started.
+     */
+    @Before
+    public void setup() throws IOException {
+        List<InetSocketAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < SHARD_COUNT; ++i) {
+            Database database = new Database("jdbc:h2:mem:shard" + i);
+            databases.add(database);
+            ShardServer server = new ShardServer(0, new UserRepository(database));
+            servers.add(server);
+            new Thread(server, "shard-server-" + i).start();
+            addresses.add(new InetSocketAddress("127.0.0.1", server.getPort()));
+        }
+        userRepository = new ShardedUserRepository(addresses);
+    }
+
+    /**
+     * Clean up the test environment after each test case.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @After
+    public void tearDown() throws SQLException {
+        userRepository.close();
+        servers.forEach(ShardServer::close);
+        for (Database database : databases) {
+            database.closeConnection();
+        }
+        processes.forEach(Process::destroy);
+    }
+
+    /**
+     * Starts a shard server in a separate JVM process with its own in-memory database.
+     *
+     * @return The address of the started shard server.
+     * @throws IOException if the process can't be started.
+     */
+    private InetSocketAddress startShardProcess() throws IOException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        Process process = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                ShardServer.class.getName(), "--port=0", "--url=jdbc:h2:mem:shard")
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        processes.add(process);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(),
+                StandardCharsets.UTF_8));
+        String line = reader.readLine();
+        assertTrue("Unexpected shard server output: " + line,
+                line != null && line.startsWith("Shard server listening on port "));
+        return new InetSocketAddress("127.0.0.1", Integer.parseInt(line.substring(line.lastIndexOf(' ') + 1)));
+    }
+
+    /**
+     * Test that the users are distributed between the shards, and listed in id order.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testAddAndGetAll() throws SQLException {
+        List<User> expected = new ArrayList<>();
+        for (int id = -5; id < 25; ++id) {
+            expected.add(new User(id, "a" + id, "User" + id));
+        }
+        for (int i = expected.size() - 1; i >= 0; --i) {
+            userRepository.add(expected.get(i));
+        }
+
+        assertEquals(expected, userRepository.getAll());
+        for (Database database : databases) {
+            assertEquals(10, new UserRepository(database).getAll().size());
+        }
+        assertThrows(SQLException.class, () -> userRepository.add(new User(3, "a3", "Duplicate")));
+    }
+
+    /**
+     * Test that DeleteAll is fanned out to all the shards, and the deleted users are counted.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testDeleteAll() throws SQLException {
+        for (int id = 1; id <= 10; ++id) {
+            userRepository.add(new User(id, "a" + id, "User" + id));
+        }
+
+        assertEquals(10, userRepository.deleteAll());
+        assertTrue(userRepository.getAll().isEmpty());
+    }
+
+    /**
+     * Test the addIfAbsent() and upsert() methods of ShardedUserRepository.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testAddIfAbsentAndUpsert() throws SQLException {
+        assertTrue(userRepository.addIfAbsent(new User(1, "a1", "Robert")));
+        assertFalse(userRepository.addIfAbsent(new User(1, "a2", "Martin")));
+        userRepository.upsert(new User(2, "a2", "Martin"));
+        userRepository.upsert(new User(1, "b1", "Bob"));
+
+        assertEquals(List.of(new User(1, "b1", "Bob"), new User(2, "a2", "Martin")), userRepository.getAll());
+    }
+
+    /**
+     * Test the sharded deployment with the shard servers running in separate processes on the same host.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testSeparateProcesses() throws Exception {
+        List<InetSocketAddress> addresses = List.of(startShardProcess(), startShardProcess());
+        ShardedUserRepository repository = new ShardedUserRepository(addresses);
+        try {
+            for (int id = 0; id < 100; ++id) {
+                assertTrue(repository.addIfAbsent(new User(id, "a" + id, "User" + id)));
+            }
+            List<User> users = repository.getAll();
+            assertEquals(100, users.size());
+            for (int id = 0; id < 100; ++id) {
+                assertEquals(id, users.get(id).getId());
+            }
+            assertEquals(100, repository.deleteAll());
+        } finally {
+            repository.close();
+        }
+        for (Process process : processes) {
+            process.destroy();
+            assertTrue(process.waitFor(10, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Test that the sharded storage fails clearly without shard addresses.
+     */
+    @Test
+    public void testMissingAddresses() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> ShardedUserRepository.parseAddresses(null));
+        assertTrue(e.getMessage(), e.getMessage().contains("--shards"));
+        assertThrows(IllegalArgumentException.class, () -> ShardedUserRepository.parseAddresses(" "));
+    }
+
+    /**
+     * Test that the requests to a shard server accepting connections without answering them time out,
+     * and that the requests above the connection limit time out waiting for a free connection.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test(timeout = 10000)
+    public void testUnresponsiveShard() throws Exception {
+        try (ServerSocket silent = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            ShardedUserRepository repository = new ShardedUserRepository(
+                    List.of(new InetSocketAddress("127.0.0.1", silent.getLocalPort())),
+                    new ShardedUserRepository.Settings(1, 300, 2000));
+            try {
+                SQLException e = assertThrows(SQLException.class, repository::getAll);
+                assertTrue(e.getMessage(), e.getMessage().contains("failed"));
+
+                Thread blocked = new Thread(() -> assertThrows(SQLException.class, repository::deleteAll));
+                blocked.start();
+                Thread.sleep(200);
+                SQLException waiting = assertThrows(SQLException.class,
+                        () -> repository.add(new User(1, "a1", "Robert")));
+                assertTrue(waiting.getMessage(), waiting.getMessage().contains("free connection"));
+                blocked.join();
+            } finally {
+                repository.close();
+            }
+        }
+    }
+}
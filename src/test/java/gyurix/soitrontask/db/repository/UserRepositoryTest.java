@@ -7,9 +7,13 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -74,9 +78,104 @@ public class UserRepositoryTest {
         userRepository.add(user1);
         userRepository.add(user2);
 
-        userRepository.deleteAll();
+        assertEquals(2, userRepository.deleteAll());
 
         List<User> users = userRepository.getAll();
         assertTrue(users.isEmpty());
     }
+
+    /**
+     * Test the addIfAbsent() and upsert() methods of UserRepository, which handle existing ids without exceptions.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testAddIfAbsentAndUpsert() throws SQLException {
+        assertTrue(userRepository.addIfAbsent(new User(1, "a1", "Robert")));
+        assertFalse(userRepository.addIfAbsent(new User(1, "a2", "Martin")));
+        userRepository.upsert(new User(2, "a2", "Martin"));
+        userRepository.upsert(new User(1, "b1", "Bob"));
+
+        assertEquals(List.of(new User(1, "b1", "Bob"), new User(2, "a2", "Martin")), userRepository.getAll());
+    }
+
+    /**
+     * Test that the parallel scan of UserRepository lists all the users in id order.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testParallelScan() throws SQLException {
+        assertThrows(IllegalArgumentException.class, () -> new UserRepository(new Database("jdbc:h2:mem:"), 4));
+
+        Database scanDatabase = new Database("jdbc:h2:mem:scantest");
+        UserRepository scanRepository = new UserRepository(scanDatabase, 4);
+        try {
+            assertTrue(scanRepository.getAll().isEmpty());
+
+            List<User> expected = new ArrayList<>();
+            expected.add(new User(Integer.MIN_VALUE, "min", "Min"));
+            for (int id = -500; id < 1500; id += 3) {
+                expected.add(new User(id, "a" + id, "User" + id));
+            }
+            expected.add(new User(Integer.MAX_VALUE, "max", "Max"));
+            for (int i = expected.size() - 1; i >= 0; --i) {
+                scanRepository.add(expected.get(i));
+            }
+            assertEquals(expected, scanRepository.getAll());
+
+            scanRepository.deleteAll();
+            scanRepository.add(new User(7, "a7", "Single"));
+            assertEquals(List.of(new User(7, "a7", "Single")), scanRepository.getAll());
+        } finally {
+            scanRepository.close();
+            scanDatabase.closeConnection();
+        }
+    }
+
+    /**
+     * Test that the ranges of the parallel scan split the ids between the smallest and the largest ids
+     * into contiguous ranges of equal widths, covering the whole int range.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Test
+    public void testScanRanges() throws SQLException {
+        Database scanDatabase = new Database("jdbc:h2:mem:rangetest");
+        UserRepository scanRepository = new UserRepository(scanDatabase, 4);
+        try {
+            assertTrue(scanRepository.getScanRanges().isEmpty());
+
+            scanRepository.add(new User(7, "a7", "Single"));
+            List<int[]> ranges = scanRepository.getScanRanges();
+            assertEquals(1, ranges.size());
+            assertArrayEquals(new int[]{Integer.MIN_VALUE, Integer.MAX_VALUE}, ranges.get(0));
+
+            scanRepository.deleteAll();
+            for (int id = 0; id < 1000; ++id) {
+                scanRepository.add(new User(id, "a" + id, "User" + id));
+            }
+            ranges = scanRepository.getScanRanges();
+            assertEquals(4, ranges.size());
+            assertArrayEquals(new int[]{Integer.MIN_VALUE, 249}, ranges.get(0));
+            assertArrayEquals(new int[]{250, 499}, ranges.get(1));
+            assertArrayEquals(new int[]{500, 749}, ranges.get(2));
+            assertArrayEquals(new int[]{750, Integer.MAX_VALUE}, ranges.get(3));
+
+            scanRepository.deleteAll();
+            scanRepository.add(new User(Integer.MIN_VALUE, "min", "Min"));
+            scanRepository.add(new User(Integer.MAX_VALUE, "max", "Max"));
+            ranges = scanRepository.getScanRanges();
+            assertEquals(4, ranges.size());
+            assertEquals(Integer.MIN_VALUE, ranges.get(0)[0]);
+            for (int i = 1; i < ranges.size(); ++i) {
+                assertEquals(ranges.get(i - 1)[1] + 1, ranges.get(i)[0]);
+            }
+            assertEquals(Integer.MAX_VALUE, ranges.get(3)[1]);
+            assertEquals(2, scanRepository.getAll().size());
+        } finally {
+            scanRepository.close();
+            scanDatabase.closeConnection();
+        }
+    }
 }
@@ -0,0 +1,115 @@
+package gyurix.soitrontask.load;
+
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.repository.OffHeapUserRepository;
+import org.junit.Test;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for LoadGenerator class.
+ */
+public class LoadGeneratorTest {
+    /**
+     * Creates load settings with the given arrival model.
+     *
+     * @param arrival The arrival model.
+     * @return The created settings.
+     */
+    private static LoadGenerator.Settings settings(LoadGenerator.Arrival arrival) {
+        return new LoadGenerator.Settings(2000, 2, arrival, 50000, 8,
+                CommandMix.parse("add=90,deleteall=2,help=8"), KeyDistribution.uniform(1000000), 42, 30);
+    }
+
+    /**
+     * Test that the same seed generates the same commands.
+     */
+    @Test
+    public void testDeterministicCommands() {
+        LoadGenerator generator = new LoadGenerator(new OffHeapUserRepository(),
+                settings(LoadGenerator.Arrival.CLOSED));
+        assertArrayEquals(generator.generateCommands(), generator.generateCommands());
+    }
+
+    /**
+     * Test that the Zipf distribution prefers the low ids, while the uniform distribution covers the key space evenly.
+     */
+    @Test
+    public void testKeyDistributions() {
+        Random random = new Random(1);
+        KeyDistribution zipf = KeyDistribution.zipf(1000, 1.2);
+        KeyDistribution uniform = KeyDistribution.uniform(1000);
+        int zipfHot = 0;
+        int uniformHot = 0;
+        for (int i = 0; i < 10000; ++i) {
+            int id = zipf.next(random);
+            assertTrue(id >= 1 && id <= 1000);
+            zipfHot += id <= 10 ? 1 : 0;
+            uniformHot += uniform.next(random) <= 10 ? 1 : 0;
+        }
+        assertTrue(zipfHot > 5000);
+        assertTrue(uniformHot < 200);
+    }
+
+    /**
+     * Test that the closed and the open loop runs complete every command and report the measurements as JSON.
+     *
+     * @throws InterruptedException if the run is interrupted.
+     */
+    @Test
+    public void testRunReport() throws InterruptedException {
+        for (LoadGenerator.Arrival arrival : LoadGenerator.Arrival.values()) {
+            LoadReport report = new LoadGenerator(new OffHeapUserRepository(), settings(arrival)).run(0);
+            assertEquals(2000, report.completed());
+            assertEquals(2000, report.latenciesNanos().length);
+            assertTrue(Arrays.stream(report.latenciesNanos()).allMatch(latency -> latency > 0));
+            assertTrue(report.getLatencyPercentileNanos(50) <= report.getLatencyPercentileNanos(99));
+            assertTrue(report.getThroughput() > 0);
+            String json = report.toJson();
+            assertTrue(json, json.startsWith("{\"run\":0,\"arrival\":\"" + arrival.name().toLowerCase() + "\""));
+            assertTrue(json, json.contains("\"completed\":2000,"));
+            assertTrue(json, json.contains("\"p99\":"));
+        }
+    }
+
+    /**
+     * Test that the closed loop stops submitting commands at the timeout of the run,
+     * and that the console streams are left untouched during the run.
+     *
+     * @throws InterruptedException if the run is interrupted.
+     */
+    @Test(timeout = 10000)
+    public void testRunTimeout() throws InterruptedException {
+        PrintStream out = System.out;
+        AtomicBoolean streamsSwapped = new AtomicBoolean();
+        OffHeapUserRepository repository = new OffHeapUserRepository() {
+            @Override
+            public synchronized boolean addIfAbsent(User user) {
+                streamsSwapped.compareAndSet(false, System.out != out);
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.addIfAbsent(user);
+            }
+        };
+        LoadGenerator.Settings settings = new LoadGenerator.Settings(1000, 1, LoadGenerator.Arrival.CLOSED, 50000, 1,
+                CommandMix.parse("add=100"), KeyDistribution.uniform(1000000), 42, 1);
+
+        LoadReport report = new LoadGenerator(repository, settings).run(0);
+        assertTrue(report.completed() > 0);
+        assertTrue(report.completed() < 1000);
+        assertEquals(report.completed(), report.latenciesNanos().length);
+        assertTrue(Arrays.stream(report.latenciesNanos()).allMatch(latency -> latency > 0));
+        assertFalse(streamsSwapped.get());
+    }
+}
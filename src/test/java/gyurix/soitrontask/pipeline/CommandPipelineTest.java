@@ -0,0 +1,164 @@
+package gyurix.soitrontask.pipeline;
+
+import gyurix.soitrontask.command.Command;
+import gyurix.soitrontask.command.CommandError;
+import gyurix.soitrontask.command.CommandResult;
+import gyurix.soitrontask.consumer.CommandExecutor;
+import gyurix.soitrontask.db.repository.OffHeapUserRepository;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for CommandPipeline and Stage classes.
+ */
+public class CommandPipelineTest {
+    private final List<Stage<?, ?>> stages = new ArrayList<>();
+
+    private CommandPipeline pipeline;
+
+    /**
+     * Clean up the test environment after each test case.
+     */
+    @After
+    public void tearDown() {
+        if (pipeline != null) {
+            pipeline.stop();
+        }
+        stages.forEach(Stage::stop);
+    }
+
+    /**
+     * Test that a command failing unexpectedly in the execution stage is completed with an error,
+     * and the commands after it are still executed and printed in their original order.
+     *
+     * @throws InterruptedException if the waiting is interrupted.
+     */
+    @Test
+    public void testExecutionFailure() throws InterruptedException {
+        Queue<String> queue = new LinkedList<>();
+        OffHeapUserRepository repository = new OffHeapUserRepository();
+        pipeline = new CommandPipeline(queue, () -> new CommandExecutor(queue, repository) {
+            @Override
+            public CommandResult executeDeferred(Command command, CommandError error, List<Output> output) {
+                if (command.getLine().equals("PrintAll")) {
+                    throw new IllegalStateException("Test failure");
+                }
+                return super.executeDeferred(command, error, output);
+            }
+        }, new CommandPipeline.Settings(2, 2, 2, 4));
+        synchronized (queue) {
+            queue.addAll(List.of("Add (1, a1, User1)", "PrintAll", "Add (2, a2, User2)", "PrintAll",
+                    "Add (3, a3, User3)"));
+        }
+        CountDownLatch completed = new CountDownLatch(5);
+        AtomicInteger failed = new AtomicInteger();
+        pipeline.setCompletionListener((command, success) -> {
+            if (!success) {
+                failed.incrementAndGet();
+            }
+            completed.countDown();
+        });
+        new Thread(pipeline).start();
+
+        assertTrue("Commands were not executed in time", completed.await(10, TimeUnit.SECONDS));
+        assertEquals(2, failed.get());
+        assertEquals(List.of("Started pipeline", "Added user User(guid=a1, id=1, name=User1)",
+                "Added user User(guid=a2, id=2, name=User2)", "Added user User(guid=a3, id=3, name=User3)"),
+                new ArrayList<>(pipeline.getLog()));
+        assertEquals(4, pipeline.getErrorLog().size());
+        assertTrue(pipeline.getErrorLog().contains("IllegalStateException - Test failure"));
+        assertEquals(2, pipeline.getStages().get(1).getFailedCount());
+    }
+
+    /**
+     * Test that the output of the commands is printed in their original order with parallel parse and render stages,
+     * and that the commands are executed in their original order by a single execution thread.
+     *
+     * @throws InterruptedException if the waiting is interrupted.
+     */
+    @Test
+    public void testOrderedOutput() throws InterruptedException {
+        Queue<String> queue = new LinkedList<>();
+        OffHeapUserRepository repository = new OffHeapUserRepository();
+        pipeline = new CommandPipeline(queue, () -> new CommandExecutor(queue, repository),
+                new CommandPipeline.Settings(4, 1, 4, 8));
+        List<String> expectedLog = new ArrayList<>(List.of("Started pipeline"));
+        int commandCount = 0;
+        synchronized (queue) {
+            for (int i = 0; i < 100; ++i) {
+                queue.add("Add (" + i + ", a" + i + ", User" + i + ")");
+                queue.add("Add (" + i + ", a" + i + ", User" + i + ")");
+                expectedLog.add("Added user User(guid=a" + i + ", id=" + i + ", name=User" + i + ")");
+                commandCount += 2;
+                if (i % 10 == 9) {
+                    queue.add("DeleteAll");
+                    queue.add("PrintAll");
+                    expectedLog.add("Deleted all users");
+                    expectedLog.add("Users:");
+                    commandCount += 2;
+                }
+            }
+        }
+        CountDownLatch completed = new CountDownLatch(commandCount);
+        pipeline.setCompletionListener((command, success) -> completed.countDown());
+        new Thread(pipeline).start();
+
+        assertTrue("Commands were not executed in time", completed.await(10, TimeUnit.SECONDS));
+        assertEquals(expectedLog, new ArrayList<>(pipeline.getLog()));
+        assertEquals(100, pipeline.getErrorLog().size());
+        assertTrue(pipeline.getErrorStats().contains("DUPLICATE_ID: 100"));
+        for (Stage<?, ?> stage : pipeline.getStages()) {
+            assertEquals(commandCount, stage.getProcessedCount());
+            assertTrue(stage.getPeakDepth() <= 8);
+        }
+    }
+
+    /**
+     * Test that a stage keeps the order of its items while processing them with random delays on multiple threads,
+     * and that its bounded input queue blocks the submission of the items.
+     *
+     * @throws InterruptedException if the waiting is interrupted.
+     */
+    @Test
+    public void testStageOrderAndBackpressure() throws InterruptedException {
+        int itemCount = 200;
+        List<Integer> results = new ArrayList<>();
+        CountDownLatch completed = new CountDownLatch(itemCount);
+        Stage<Integer, Integer> stage = new Stage<>("test", 4, item -> {
+            try {
+                TimeUnit.MICROSECONDS.sleep((item * 7919L) % 500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return item * 2;
+        }, (item, e) -> -1, item -> {
+            results.add(item.value());
+            completed.countDown();
+        });
+        stages.add(stage);
+        stage.start(4);
+        for (int i = 0; i < itemCount; ++i) {
+            stage.submit(new Stage.Item<>(i, i));
+        }
+
+        assertTrue("Items were not processed in time", completed.await(10, TimeUnit.SECONDS));
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < itemCount; ++i) {
+            expected.add(i * 2);
+        }
+        assertEquals(expected, results);
+        assertEquals(itemCount, stage.getProcessedCount());
+        assertTrue(stage.getPeakDepth() <= 4);
+    }
+}
@@ -0,0 +1,151 @@
+package gyurix.soitrontask.queue;
+
+import gyurix.soitrontask.consumer.CommandExecutor;
+import gyurix.soitrontask.db.repository.OffHeapUserRepository;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for FairCommandQueue class.
+ */
+public class FairCommandQueueTest {
+    /**
+     * Test that the producers are drained in round-robin order, keeping the FIFO order within each producer.
+     */
+    @Test
+    public void testRoundRobinDraining() {
+        FairCommandQueue queue = new FairCommandQueue();
+        FairCommandQueue.ProducerQueue chatty = queue.forProducer("chatty", FairCommandQueue.Limits.UNLIMITED);
+        FairCommandQueue.ProducerQueue quiet = queue.forProducer("quiet", FairCommandQueue.Limits.UNLIMITED);
+        for (int i = 0; i < 4; ++i) {
+            chatty.offer("Add (" + i + ", a, b)");
+        }
+        quiet.offer("Help");
+        quiet.offer("PrintAll");
+        assertEquals(6, queue.size());
+        List<String> polled = new ArrayList<>();
+        while (!queue.isEmpty()) {
+            polled.add(queue.poll());
+        }
+        assertEquals(List.of("Add (0, a, b)", "Help", "Add (1, a, b)", "PrintAll", "Add (2, a, b)", "Add (3, a, b)"),
+                polled);
+        assertNull(queue.poll());
+        assertEquals(4, chatty.getAcceptedCount());
+    }
+
+    /**
+     * Test that the commands exceeding the token bucket of a rejecting producer are rejected and counted.
+     */
+    @Test
+    public void testRateLimitReject() {
+        FairCommandQueue queue = new FairCommandQueue();
+        FairCommandQueue.ProducerQueue producer = queue.forProducer("p", new FairCommandQueue.Limits(
+                0.001, 3, 0, FairCommandQueue.OverflowAction.REJECT));
+        for (int i = 0; i < 5; ++i) {
+            producer.offer("Help");
+        }
+        assertEquals(3, queue.size());
+        assertEquals(3, producer.getAcceptedCount());
+        assertEquals(2, producer.getRejectedCount());
+        assertTrue(queue.getStats().contains("p [accepted: 3, rejected: 2"));
+    }
+
+    /**
+     * Test that a delaying producer is slowed down to its rate limit.
+     */
+    @Test
+    public void testRateLimitDelay() {
+        FairCommandQueue queue = new FairCommandQueue();
+        FairCommandQueue.ProducerQueue producer = queue.forProducer("p", new FairCommandQueue.Limits(
+                100, 1, 0, FairCommandQueue.OverflowAction.DELAY));
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; ++i) {
+            assertTrue(producer.offer("Help"));
+        }
+        assertTrue(System.nanoTime() - start >= 40_000_000L);
+        assertEquals(6, queue.size());
+        assertEquals(5, producer.getDelayedCount());
+        assertEquals(0, producer.getRejectedCount());
+    }
+
+    /**
+     * Test that the in-flight limit rejects commands until the consumers complete the polled commands.
+     */
+    @Test
+    public void testMaxInFlightReject() {
+        FairCommandQueue queue = new FairCommandQueue();
+        FairCommandQueue.ProducerQueue producer = queue.forProducer("p", new FairCommandQueue.Limits(
+                0, 1, 2, FairCommandQueue.OverflowAction.REJECT));
+        assertTrue(producer.offer("Help"));
+        assertTrue(producer.offer("Help"));
+        assertFalse(producer.offer("Help"));
+        String polled = queue.poll();
+        assertEquals(1, queue.size());
+        assertEquals(1, producer.getPendingCount());
+        assertEquals(2, producer.getInFlightCount());
+        assertFalse(producer.offer("Help"));
+        queue.complete(polled);
+        assertEquals(1, producer.getInFlightCount());
+        assertTrue(producer.offer("Help"));
+        assertEquals(2, producer.getRejectedCount());
+    }
+
+    /**
+     * Test that the in-flight limit blocks a delaying producer until a consumer completes a polled command.
+     */
+    @Test
+    public void testMaxInFlightDelay() throws InterruptedException {
+        FairCommandQueue queue = new FairCommandQueue();
+        FairCommandQueue.ProducerQueue producer = queue.forProducer("p", new FairCommandQueue.Limits(
+                0, 1, 1, FairCommandQueue.OverflowAction.DELAY));
+        producer.offer("Add (1, a, b)");
+        Thread thread = new Thread(() -> producer.offer("Add (2, a, b)"));
+        thread.start();
+        thread.join(50);
+        assertTrue(thread.isAlive());
+        String polled = queue.poll();
+        assertEquals("Add (1, a, b)", polled);
+        thread.join(50);
+        assertTrue(thread.isAlive());
+        queue.complete(polled);
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertEquals("Add (2, a, b)", queue.poll());
+        assertEquals(1, producer.getDelayedCount());
+    }
+
+    /**
+     * Test that the executors report the completion of the polled commands, releasing the in-flight quota.
+     *
+     * @throws InterruptedException if the waiting is interrupted.
+     */
+    @Test(timeout = 10000)
+    public void testCompletionReportedByExecutor() throws InterruptedException {
+        FairCommandQueue queue = new FairCommandQueue();
+        FairCommandQueue.ProducerQueue producer = queue.forProducer("p", new FairCommandQueue.Limits(
+                0, 1, 1, FairCommandQueue.OverflowAction.DELAY));
+        CommandExecutor executor = new CommandExecutor(queue, new OffHeapUserRepository());
+        new Thread(executor).start();
+        try {
+            for (int i = 0; i < 10; ++i) {
+                assertTrue(producer.offer("Add (" + i + ", a, b)"));
+            }
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (producer.getInFlightCount() > 0 && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(5);
+            }
+            assertEquals(0, producer.getInFlightCount());
+            assertEquals(10, producer.getAcceptedCount());
+        } finally {
+            executor.stop();
+        }
+    }
+}
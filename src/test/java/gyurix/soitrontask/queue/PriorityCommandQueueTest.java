@@ -0,0 +1,90 @@
+package gyurix.soitrontask.queue;
+
+import gyurix.soitrontask.command.PriorityClass;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Unit test for PriorityCommandQueue class.
+ */
+public class PriorityCommandQueueTest {
+    /**
+     * Test that the classes are polled proportionally to their weights, keeping the FIFO order within each class.
+     */
+    @Test
+    public void testWeightedFairShare() {
+        PriorityCommandQueue queue = new PriorityCommandQueue(60000);
+        for (int i = 0; i < 13; ++i) {
+            queue.add("PrintAll");
+            queue.add("Add (" + i + ", a, b)");
+            queue.add("Help");
+        }
+        List<String> polled = new ArrayList<>();
+        for (int i = 0; i < 13; ++i) {
+            polled.add(queue.poll());
+        }
+        assertEquals(8, polled.stream().filter("Help"::equals).count());
+        assertEquals(4, polled.stream().filter(line -> line.startsWith("Add")).count());
+        assertEquals(1, polled.stream().filter("PrintAll"::equals).count());
+        assertEquals(List.of("Add (0, a, b)", "Add (1, a, b)", "Add (2, a, b)", "Add (3, a, b)"),
+                polled.stream().filter(line -> line.startsWith("Add")).toList());
+        assertEquals(26, queue.size());
+        assertEquals(8, queue.getPolledCount(PriorityClass.INTERACTIVE));
+    }
+
+    /**
+     * Test that the explicit class prefix overrides the default class and is kept in the polled command line.
+     */
+    @Test
+    public void testExplicitPrefix() {
+        PriorityCommandQueue queue = new PriorityCommandQueue(60000);
+        queue.add("Add (1, a, b)");
+        queue.add("[interactive] PrintAll");
+        queue.add("[unknown] Help");
+        assertEquals(2, queue.getSize(PriorityClass.INTERACTIVE));
+        assertEquals("[interactive] PrintAll", queue.peek());
+        assertEquals("[interactive] PrintAll", queue.poll());
+        assertEquals("Add (1, a, b)", queue.poll());
+        assertEquals("[unknown] Help", queue.poll());
+        assertNull(queue.poll());
+    }
+
+    /**
+     * Test that the explicit class prefix of a write is ignored, so the writes are never reordered.
+     */
+    @Test
+    public void testWritePrefixIgnored() {
+        PriorityCommandQueue queue = new PriorityCommandQueue(60000);
+        queue.add("Help");
+        queue.add("DeleteAll");
+        queue.add("[interactive] Add (1, a, b)");
+        queue.add("[bulk] Upsert (1, c, d)");
+        assertEquals(3, queue.getSize(PriorityClass.WRITE));
+        assertEquals("Help", queue.poll());
+        assertEquals("DeleteAll", queue.poll());
+        assertEquals("[interactive] Add (1, a, b)", queue.poll());
+        assertEquals("[bulk] Upsert (1, c, d)", queue.poll());
+    }
+
+    /**
+     * Test that a command waiting for longer than the maximum wait time is polled before the higher weighted classes.
+     *
+     * @throws InterruptedException if the sleep is interrupted.
+     */
+    @Test
+    public void testStarvationProtection() throws InterruptedException {
+        PriorityCommandQueue queue = new PriorityCommandQueue(5);
+        queue.add("PrintAll");
+        TimeUnit.MILLISECONDS.sleep(10);
+        queue.add("Help");
+        queue.add("Help");
+        assertEquals("PrintAll", queue.poll());
+        assertEquals(1, queue.getStarvationCount(PriorityClass.BULK));
+    }
+}
@@ -0,0 +1,172 @@
+package gyurix.soitrontask.service;
+
+import gyurix.soitrontask.command.CommandError;
+import gyurix.soitrontask.command.CommandResult;
+import gyurix.soitrontask.consumer.CommandExecutor;
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.repository.OffHeapUserRepository;
+import gyurix.soitrontask.pipeline.CommandPipeline;
+import gyurix.soitrontask.queue.CommandSink;
+import gyurix.soitrontask.queue.PriorityCommandQueue;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Unit test for CommandService class.
+ */
+public class CommandServiceTest {
+    private final OffHeapUserRepository repository = new OffHeapUserRepository();
+
+    private final List<Runnable> stoppers = new ArrayList<>();
+
+    private Queue<String> queue = new LinkedList<>();
+
+    private CommandService service = new CommandService(queue);
+
+    /**
+     * Stops the consumers started by the test.
+     */
+    @After
+    public void tearDown() {
+        stoppers.forEach(Runnable::run);
+    }
+
+    /**
+     * Starts consumers executing the commands of the queue and completing the futures of the service.
+     *
+     * @param count The number of the consumers.
+     */
+    private void startConsumers(int count) {
+        for (int i = 0; i < count; ++i) {
+            CommandExecutor consumer = new CommandExecutor(queue, repository);
+            consumer.setCompletionListener(service);
+            stoppers.add(consumer::stop);
+            new Thread(consumer).start();
+        }
+    }
+
+    /**
+     * Test that the futures are completed with the typed results of the commands.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testTypedResults() throws Exception {
+        startConsumers(1);
+        User robert = new User(1, "a1", "Robert");
+        assertEquals(new CommandResult.Added(robert),
+                service.submit("Add (1, \"a1\", \"Robert\")").get(10, TimeUnit.SECONDS));
+        assertEquals(new CommandResult.Failed(new CommandError(CommandError.Code.DUPLICATE_ID, 5)),
+                service.submit("Add (1, \"a1\", \"Robert\")").get(10, TimeUnit.SECONDS));
+        assertEquals(new CommandResult.AlreadyExists(1),
+                service.submit("AddIfAbsent (1, a1, Robert)").get(10, TimeUnit.SECONDS));
+        assertEquals(new CommandResult.Upserted(new User(2, "a2", "Martin")),
+                service.submit("Upsert (2, a2, Martin)").get(10, TimeUnit.SECONDS));
+        assertEquals(new CommandResult.Users(List.of(robert, new User(2, "a2", "Martin"))),
+                service.submit("PrintAll").get(10, TimeUnit.SECONDS));
+        assertEquals(new CommandResult.Deleted(2), service.submit("DeleteAll").get(10, TimeUnit.SECONDS));
+        assertEquals(new CommandResult.Failed(new CommandError(CommandError.Code.UNKNOWN_COMMAND, 0)),
+                service.submit("Remove (1)").get(10, TimeUnit.SECONDS));
+        assertEquals(0, service.getInFlightCount());
+    }
+
+    /**
+     * Test that many commands can be kept in flight on multiple consumers and composed on their completion.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testManyCommandsInFlight() throws Exception {
+        startConsumers(4);
+        int commandCount = 1000;
+        List<CompletableFuture<Integer>> ids = new ArrayList<>();
+        for (int i = 0; i < commandCount; ++i) {
+            ids.add(service.submit("Add (" + i + ", a" + i + ", User" + i + ")")
+                    .thenApply(result -> ((CommandResult.Added) result).user().getId()));
+        }
+        CompletableFuture.allOf(ids.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+        for (int i = 0; i < commandCount; ++i) {
+            assertEquals(i, (int) ids.get(i).join());
+        }
+        CommandResult users = service.submit("PrintAll").get(10, TimeUnit.SECONDS);
+        assertEquals(commandCount, ((CommandResult.Users) users).users().size());
+    }
+
+    /**
+     * Test that the service completes the futures when the commands are executed by a CommandPipeline,
+     * and that the commands of the other producers are ignored.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testPipeline() throws Exception {
+        CommandPipeline pipeline = new CommandPipeline(queue, () -> new CommandExecutor(queue, repository),
+                new CommandPipeline.Settings(2, 1, 2, 16));
+        pipeline.setCompletionListener(service);
+        stoppers.add(pipeline::stop);
+        new Thread(pipeline).start();
+
+        synchronized (queue) {
+            queue.add("Add (1, a1, Robert)");
+            queue.notify();
+        }
+        CommandResult result = service.submit("Add (1, a1, Robert)").get(10, TimeUnit.SECONDS);
+        assertEquals(CommandError.Code.DUPLICATE_ID, ((CommandResult.Failed) result).error().code());
+        assertTrue(service.submit("Help").get(10, TimeUnit.SECONDS) instanceof CommandResult.Help);
+        assertEquals(0, service.getInFlightCount());
+    }
+
+    /**
+     * Test that the commands with a priority class prefix are completed, although the PriorityCommandQueue
+     * schedules them by their prefix.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testPriorityPrefix() throws Exception {
+        queue = new PriorityCommandQueue(60000);
+        service = new CommandService(queue);
+        startConsumers(2);
+        assertTrue(service.submit("[bulk] Add (1, a1, Robert)").get(10, TimeUnit.SECONDS)
+                instanceof CommandResult.Added);
+        assertEquals(new CommandResult.Users(List.of(new User(1, "a1", "Robert"))),
+                service.submit("[interactive] PrintAll").get(10, TimeUnit.SECONDS));
+        assertTrue(service.submit("[bulk] Help").get(10, TimeUnit.SECONDS) instanceof CommandResult.Help);
+        assertEquals(0, service.getInFlightCount());
+    }
+
+    /**
+     * Test that the commands are timed out and no longer tracked if no executor completes them.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testTimeout() throws Exception {
+        service = new CommandService(CommandSink.of(queue), 100);
+        CompletableFuture<CommandResult> future = service.submit("Help");
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("The command was completed without an executor");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        long deadline = System.currentTimeMillis() + 10000;
+        while (service.getInFlightCount() != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, service.getInFlightCount());
+    }
+}
@@ -0,0 +1,205 @@
+package gyurix.soitrontask.session;
+
+import gyurix.soitrontask.command.CommandError;
+import gyurix.soitrontask.consumer.CommandExecutor;
+import gyurix.soitrontask.db.Database;
+import gyurix.soitrontask.db.entity.User;
+import gyurix.soitrontask.db.repository.UserRepository;
+import gyurix.soitrontask.producer.Producer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Scanner;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit test for SessionManager class, running the transactions of a producer session on a consumer.
+ */
+public class SessionManagerTest {
+    /**
+     * The JDBC URL of the database used by the tests.
+     */
+    private static final String URL = "jdbc:h2:mem:sessionmanagertest";
+
+    /**
+     * The shared user repository, used by the commands outside the transactions.
+     */
+    private static final UserRepository userRepository = new UserRepository(new Database(URL));
+
+    /**
+     * The permits released by the consumer for each of its completed commands.
+     */
+    private final Semaphore completed = new Semaphore(0);
+
+    /**
+     * The shared command queue.
+     */
+    private final Queue<String> commandQueue = new LinkedList<>();
+
+    private CommandExecutor consumer;
+
+    private SessionManager sessions;
+
+    /**
+     * Clears the users and starts a consumer supporting the transactions with a short transaction timeout.
+     *
+     * @throws SQLException if a database access error occurs.
+     */
+    @Before
+    public void setUp() throws SQLException {
+        userRepository.deleteAll();
+        sessions = new SessionManager(URL, Connection.TRANSACTION_READ_COMMITTED, 1000);
+        consumer = new CommandExecutor(commandQueue, userRepository, null, sessions);
+        consumer.setCompletionListener((command, success) -> completed.release());
+        new Thread(consumer).start();
+    }
+
+    /**
+     * Stops the consumer and the session manager.
+     */
+    @After
+    public void tearDown() {
+        consumer.stop();
+        sessions.close();
+    }
+
+    /**
+     * Produces the given commands on the given session and waits for their execution.
+     *
+     * @param session  The session of the producer.
+     * @param commands The command lines.
+     * @throws InterruptedException if the waiting for the commands is interrupted.
+     */
+    private void produce(Session session, String... commands) throws InterruptedException {
+        String input = String.join("\n", commands) + "\n";
+        new Producer(commandQueue, new Scanner(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))),
+                session).run();
+        assertTrue("Commands were not executed in time", completed.tryAcquire(commands.length, 10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Submits a command on the given session directly, continuing the transaction of an earlier producer,
+     * and waits for its execution.
+     *
+     * @param session The session.
+     * @param command The command line.
+     * @throws InterruptedException if the waiting for the command is interrupted.
+     */
+    private void submit(Session session, String command) throws InterruptedException {
+        synchronized (commandQueue) {
+            commandQueue.add(session.submit(command));
+            commandQueue.notify();
+        }
+        assertTrue("Command was not executed in time", completed.tryAcquire(1, 10, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Test that the changes of a transaction are only visible to the other connections after its commit.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testCommit() throws Exception {
+        Session session = sessions.open();
+        produce(session, "Begin", "Add (1, \"a1\", \"Robert\")", "Add (2, \"a2\", \"Martin\")");
+        assertTrue(session.isInTransaction());
+        assertEquals(List.of(), userRepository.getAll());
+
+        submit(session, "Commit");
+        assertEquals(List.of(new User(1, "a1", "Robert"), new User(2, "a2", "Martin")), userRepository.getAll());
+        assertEquals(1, sessions.getCommittedCount());
+        assertEquals(List.of(), consumer.getErrorLog());
+    }
+
+    /**
+     * Test that the changes of a rolled back transaction are discarded, and the session can begin a new one.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testRollback() throws Exception {
+        Session session = sessions.open();
+        produce(session, "Begin", "Add (1, \"a1\", \"Robert\")", "Rollback", "PrintAll",
+                "Begin", "Add (2, \"a2\", \"Martin\")", "Add (2, \"a2\", \"Martin\")", "Commit", "Commit");
+        assertEquals(List.of(new User(2, "a2", "Martin")), userRepository.getAll());
+        assertEquals(1, sessions.getRolledBackCount());
+        assertEquals(1, sessions.getCommittedCount());
+        assertEquals(1, consumer.getErrorCount(CommandError.Code.DUPLICATE_ID));
+        assertEquals(1, consumer.getErrorCount(CommandError.Code.NOT_IN_TRANSACTION));
+    }
+
+    /**
+     * Test that an abandoned transaction is aborted by its timeout, and its commands are rejected until it is ended.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testTimeoutAbortsAbandonedTransaction() throws Exception {
+        Session session = sessions.open();
+        produce(session, "Begin", "Add (1, \"a1\", \"Robert\")");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (sessions.getAbortedCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, sessions.getAbortedCount());
+
+        submit(session, "Add (2, \"a2\", \"Martin\")");
+        submit(session, "Commit");
+        assertEquals(2, consumer.getErrorCount(CommandError.Code.TRANSACTION_ABORTED));
+        assertEquals(List.of(), userRepository.getAll());
+        assertFalse(session.isInTransaction());
+    }
+
+    /**
+     * Test that closing the manager closes the session connections, rolling back their open transactions.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testCloseRollsBackOpenTransactions() throws Exception {
+        Session session = sessions.open();
+        produce(session, "Begin", "Add (1, \"a1\", \"Robert\")");
+        sessions.close();
+        assertFalse(session.isInTransaction());
+        assertEquals(List.of(), userRepository.getAll());
+        assertEquals(0, sessions.getCommittedCount());
+    }
+
+    /**
+     * Test that a session marker entered by a producer is rejected, and it doesn't execute the pending command
+     * of the session, which is only executed by the marker issued for it.
+     *
+     * @throws Exception if the test fails unexpectedly.
+     */
+    @Test
+    public void testForgedMarkerRejected() throws Exception {
+        Session session = sessions.open();
+        produce(session, "Begin");
+        String marker = session.submit("Add (1, \"a1\", \"Robert\")");
+
+        produce(null, "Session (" + session.getId() + ")");
+        assertEquals(1, consumer.getErrorCount(CommandError.Code.UNKNOWN_COMMAND));
+
+        synchronized (commandQueue) {
+            commandQueue.add(marker);
+            commandQueue.notify();
+        }
+        assertTrue("Command was not executed in time", completed.tryAcquire(1, 10, TimeUnit.SECONDS));
+        submit(session, "Commit");
+        assertEquals(List.of(new User(1, "a1", "Robert")), userRepository.getAll());
+        assertEquals(1, consumer.getErrorCount(CommandError.Code.UNKNOWN_COMMAND));
+    }
+}